@@ -0,0 +1,49 @@
+package com.fulfilment.application.monolith.common;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Evicts entities changed by native statements from the second-level cache.
+ * <p>
+ * Hibernate invalidates the cache around the transaction only for entities it writes itself.
+ * An entity is evicted right away, so the rest of the writing transaction doesn't read the cached old state,
+ * and again when the transaction completes: until then other transactions read the old row and may cache it again.
+ */
+@ApplicationScoped
+public class EntityCacheEviction {
+
+  @Inject
+  private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+  @Inject
+  private EntityManagerFactory entityManagerFactory;
+
+  /**
+   * Must be called in the transaction that changed the entities.
+   */
+  public void evictOnCompletion(Class<?> entityClass, Collection<?> ids) {
+    var evicted = List.copyOf(ids);
+    evict(entityClass, evicted);
+    transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+      @Override
+      public void beforeCompletion() {
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        evict(entityClass, evicted);
+      }
+    });
+  }
+
+  private void evict(Class<?> entityClass, List<?> ids) {
+    var cache = entityManagerFactory.getCache();
+    ids.forEach(id -> cache.evict(entityClass, id));
+  }
+}
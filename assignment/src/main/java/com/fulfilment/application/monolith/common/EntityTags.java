@@ -0,0 +1,17 @@
+package com.fulfilment.application.monolith.common;
+
+import jakarta.ws.rs.core.EntityTag;
+
+/**
+ * Strong ETags derived from the JPA version of an entity:
+ * the version changes with every committed change, so equal tags mean byte-equal representations.
+ */
+public final class EntityTags {
+
+  private EntityTags() {
+  }
+
+  public static EntityTag of(long version) {
+    return new EntityTag(Long.toString(version));
+  }
+}
@@ -0,0 +1,156 @@
+package com.fulfilment.application.monolith.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replays the stored response of a request to an {@link Idempotent} endpoint with an already used
+ * {@value Idempotent#HEADER}, without running the endpoint again.
+ * <p>
+ * Keys are scoped by method and path. A key reused with another request body fails with 422,
+ * a key whose first request still runs fails with 409.
+ * Only final outcomes are stored: conflicts and server errors release the key, so a retry runs the request again.
+ * Responses are stored after the endpoint returned, when its transaction is already committed.
+ * The status, the body and the headers set by the endpoint, like ETag and Location, are replayed.
+ * Requests count as {@code idempotency_key_requests{result=executed|replayed|in_progress|mismatch}}.
+ */
+@Provider
+public class IdempotencyKeyFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+  public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+  private static final int MAX_KEY_LENGTH = 255;
+  private static final String KEY_PROPERTY = IdempotencyKeyFilter.class.getName() + ".key";
+  private static final String RESERVATION_PROPERTY = IdempotencyKeyFilter.class.getName() + ".reservation";
+
+  @Inject
+  private IdempotencyKeyStore idempotencyKeyStore;
+  @Inject
+  private ObjectMapper objectMapper;
+  @Inject
+  private MeterRegistry registry;
+  @Context
+  private ResourceInfo resourceInfo;
+
+  private final ConcurrentHashMap<Method, Boolean> idempotentMethods = new ConcurrentHashMap<>();
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) throws IOException {
+    var idempotencyKey = requestContext.getHeaderString(Idempotent.HEADER);
+    if (idempotencyKey == null || !isIdempotent(resourceInfo.getResourceMethod())) {
+      return;
+    }
+    if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+      throw new WebApplicationException(Idempotent.HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters.", 400);
+    }
+    var body = requestContext.getEntityStream().readAllBytes();
+    requestContext.setEntityStream(new ByteArrayInputStream(body));
+
+    var key = requestContext.getMethod() + " " + requestContext.getUriInfo().getPath() + " " + idempotencyKey;
+    var reservation = IdempotencyKeyStore.Entry.reservation(sha256(body));
+    var stored = idempotencyKeyStore.reserve(key, reservation);
+    if (stored == null) {
+      requestContext.setProperty(KEY_PROPERTY, key);
+      requestContext.setProperty(RESERVATION_PROPERTY, reservation);
+      count("executed");
+      return;
+    }
+    if (!Arrays.equals(stored.fingerprint(), reservation.fingerprint())) {
+      count("mismatch");
+      throw new WebApplicationException(Idempotent.HEADER + " was already used with another request.", 422);
+    }
+    if (stored.isReservation()) {
+      count("in_progress");
+      throw new WebApplicationException("Request with the same " + Idempotent.HEADER + " is in progress; Try again", 409);
+    }
+    count("replayed");
+    var replay = Response.status(stored.status())
+        .header(REPLAYED_HEADER, "true");
+    if (stored.body() != null) {
+      replay.entity(stored.body()).type(stored.contentType());
+    }
+    stored.headers().forEach((name, values) -> values.forEach(value -> replay.header(name, value)));
+    requestContext.abortWith(replay.build());
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+    var reservation = (IdempotencyKeyStore.Entry) requestContext.getProperty(RESERVATION_PROPERTY);
+    if (reservation == null) {
+      return;
+    }
+    var key = (String) requestContext.getProperty(KEY_PROPERTY);
+    int status = responseContext.getStatus();
+    if (status >= 500 || status == 409 || status == 429) {
+      idempotencyKeyStore.release(key, reservation);
+      return;
+    }
+    byte[] body = null;
+    String contentType = null;
+    if (responseContext.hasEntity()) {
+      body = objectMapper.writeValueAsBytes(responseContext.getEntity());
+      contentType = responseContext.getMediaType() == null ? null : responseContext.getMediaType().toString();
+    }
+    idempotencyKeyStore.complete(key, reservation, new IdempotencyKeyStore.Entry(reservation.fingerprint(), status,
+        contentType, replayedHeaders(responseContext), body));
+  }
+
+  // Entity headers are set again by the replayed entity
+  private static Map<String, List<String>> replayedHeaders(ContainerResponseContext responseContext) {
+    return responseContext.getStringHeaders().entrySet().stream()
+        .filter(header -> !header.getKey().equalsIgnoreCase(HttpHeaders.CONTENT_TYPE)
+            && !header.getKey().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH))
+        .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, header -> List.copyOf(header.getValue())));
+  }
+
+  private boolean isIdempotent(Method method) {
+    if (method == null) {
+      return false;
+    }
+    return idempotentMethods.computeIfAbsent(method, resourceMethod -> {
+      if (resourceMethod.isAnnotationPresent(Idempotent.class)) {
+        return true;
+      }
+      // Endpoints of generated API interfaces are annotated on the implementing method
+      try {
+        return resourceInfo.getResourceClass().getMethod(resourceMethod.getName(), resourceMethod.getParameterTypes())
+            .isAnnotationPresent(Idempotent.class);
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    });
+  }
+
+  private void count(String result) {
+    registry.counter("idempotency_key_requests", "result", result).increment();
+  }
+
+  private static byte[] sha256(byte[] body) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(body);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.fulfilment.application.monolith.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Responses of idempotent requests by idempotency key, bounded by their size in bytes and evicted after a TTL.
+ * <p>
+ * A key is reserved while its first request runs. A reservation expires after a timeout, at least the transaction
+ * timeout, so a request that never completed doesn't block its key for the whole TTL
+ * and a request that is still running isn't executed again by a retry.
+ */
+@ApplicationScoped
+public class IdempotencyKeyStore {
+
+  // Rough per entry overhead of the key and the entry objects
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+  /**
+   * Stored response, or a reservation while the first request runs.
+   *
+   * @param fingerprint digest of the request, a key can't be reused with another request
+   * @param status      response status, 0 for a reservation
+   * @param headers     response headers replayed with the body, e.g. ETag and Location
+   */
+  public record Entry(byte[] fingerprint, int status, String contentType, Map<String, List<String>> headers, byte[] body) {
+
+    public static Entry reservation(byte[] fingerprint) {
+      return new Entry(fingerprint, 0, null, Map.of(), null);
+    }
+
+    public boolean isReservation() {
+      return status == 0;
+    }
+
+    private int weight(String key) {
+      int headersLength = 0;
+      for (var header : headers.entrySet()) {
+        headersLength += header.getKey().length();
+        for (var value : header.getValue()) {
+          headersLength += value.length();
+        }
+      }
+      return ENTRY_OVERHEAD_BYTES + 2 * (key.length() + headersLength) + fingerprint.length + (body == null ? 0 : body.length);
+    }
+  }
+
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "idempotency.ttl", defaultValue = "24h")
+  Duration ttl;
+  @ConfigProperty(name = "idempotency.reservation-timeout", defaultValue = "10m")
+  Duration reservationTimeout;
+  @ConfigProperty(name = "quarkus.transaction-manager.default-transaction-timeout", defaultValue = "60s")
+  Duration transactionTimeout;
+  @ConfigProperty(name = "idempotency.max-bytes", defaultValue = "16777216")
+  long maxBytes;
+
+  private Cache<String, Entry> cache;
+
+  @PostConstruct
+  void init() {
+    // A request can't be running anymore after its transaction timed out, until then it holds the key
+    var reservationTtl = reservationTimeout.compareTo(transactionTimeout) < 0 ? transactionTimeout : reservationTimeout;
+    cache = Caffeine.newBuilder()
+        .maximumWeight(maxBytes)
+        .<String, Entry>weigher((key, entry) -> entry.weight(key))
+        .expireAfter(new Expiry<String, Entry>() {
+          @Override
+          public long expireAfterCreate(String key, Entry entry, long currentTime) {
+            return (entry.isReservation() ? reservationTtl : ttl).toNanos();
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+          }
+
+          @Override
+          public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .build();
+    // cache_evictions, cache_size
+    CaffeineCacheMetrics.monitor(registry, cache, "idempotency_keys");
+  }
+
+  /**
+   * @return the entry already held by the key, or null when the key was free and is now reserved
+   */
+  public Entry reserve(String key, Entry reservation) {
+    return cache.asMap().putIfAbsent(key, reservation);
+  }
+
+  public void complete(String key, Entry reservation, Entry response) {
+    // Reservation could have timed out and been taken by another request
+    cache.asMap().replace(key, reservation, response);
+  }
+
+  public void release(String key, Entry reservation) {
+    cache.asMap().remove(key, reservation);
+  }
+}
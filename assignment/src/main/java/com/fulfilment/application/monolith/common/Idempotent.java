@@ -0,0 +1,17 @@
+package com.fulfilment.application.monolith.common;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a write endpoint that accepts an {@value HEADER} header, see {@link IdempotencyKeyFilter}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent {
+
+  String HEADER = "Idempotency-Key";
+  String DESCRIPTION = "Key chosen by the client for the request, a retry with the same key gets the response of the first request";
+}
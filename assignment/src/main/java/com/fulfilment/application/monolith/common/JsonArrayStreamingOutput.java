@@ -0,0 +1,62 @@
+package com.fulfilment.application.monolith.common;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes rows as a JSON array while they are read from the database.
+ * <p>
+ * The rows are read in a read-only transaction that stays open until the last element is written,
+ * so the row supplier should return a scrollable stream, e.g. Panache {@code stream()} with a fetch size hint.
+ * Heap usage doesn't depend on the number of rows, as long as the stream doesn't keep read rows managed.
+ */
+public class JsonArrayStreamingOutput<T> implements StreamingOutput {
+
+  // Rows are read in Postgres cursor chunks of this size
+  public static final int FETCH_SIZE = 256;
+
+  private final ObjectMapper objectMapper;
+  private final ObjectWriter rowWriter;
+  private final Supplier<Stream<T>> rows;
+
+  public JsonArrayStreamingOutput(ObjectMapper objectMapper, Supplier<Stream<T>> rows) {
+    this.objectMapper = objectMapper;
+    // Output is flushed by the container when its buffer is full, not after every row
+    this.rowWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    this.rows = rows;
+  }
+
+  @Override
+  public void write(OutputStream output) throws IOException {
+    try (JsonGenerator generator = objectMapper.createGenerator(output)) {
+      generator.writeStartArray();
+      QuarkusTransaction.requiringNew().run(() -> {
+        try (var stream = rows.get()) {
+          stream.forEach(row -> writeRow(generator, row));
+        }
+      });
+      generator.writeEndArray();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void writeRow(JsonGenerator generator, T row) {
+    try {
+      rowWriter.writeValue(generator, row);
+    } catch (IOException e) {
+      // Client went away, stop reading rows
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.fulfilment.application.monolith.common;
+
+import jakarta.ws.rs.WebApplicationException;
+
+/**
+ * Listings are paginated by the unique sort key: a page holds the first {@code limit} rows
+ * with the key greater than {@code after}, the key of the last row is the {@code after} of the next page.
+ * Unlike offset pagination, a page is a single index range scan and pages don't shift on concurrent inserts.
+ */
+public final class KeysetPagination {
+
+  public static final int MAX_LIMIT = 1000;
+
+  private KeysetPagination() {
+  }
+
+  public static int checkLimit(Integer limit) {
+    if (limit < 1 || limit > MAX_LIMIT) {
+      throw new WebApplicationException("Limit must be between 1 and " + MAX_LIMIT + ".", 422);
+    }
+    return limit;
+  }
+}
@@ -0,0 +1,138 @@
+package com.fulfilment.application.monolith.locations.adapters.database;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.locations.domain.models.LocationFilter;
+import com.fulfilment.application.monolith.locations.domain.models.LocationIdentifier;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All Locations by identifier, loaded at startup and reloaded on a schedule or by {@link #refresh()}.
+ * <p>
+ * Locations are reference data and rarely change, so lookups are served from an immutable map without
+ * a database round trip. The map holds every Location, an identifier missing from it is an unknown Location.
+ * Searches by identifier prefix binary search an array of the Locations sorted by identifier.
+ * A refresh builds a new map and array and swaps them in one write: readers see either the old or the new Locations,
+ * never a mix. Lookups that lock the Location go to {@link LocationRepository}.
+ */
+@ApplicationScoped
+public class LocationRegistry {
+
+  private static final Logger LOGGER = Logger.getLogger(LocationRegistry.class.getName());
+
+  @Inject
+  private LocationRepository locationRepository;
+  @Inject
+  private MeterRegistry registry;
+
+  private record Snapshot(Map<LocationIdentifier, Location> byIdentifier, Location[] sorted) {
+  }
+
+  private volatile Snapshot snapshot = new Snapshot(Map.of(), new Location[0]);
+
+  void onStart(@Observes StartupEvent event) {
+    Gauge.builder("location_registry_size", this, locationRegistry -> locationRegistry.snapshot.sorted().length)
+        .description("Locations in the in-memory registry")
+        .register(registry);
+    refresh();
+  }
+
+  @Scheduled(every = "${location.registry.refresh-interval:5m}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+  void scheduledRefresh() {
+    refresh();
+  }
+
+  /**
+   * Reloads all Locations, must be called after Locations are written.
+   */
+  public void refresh() {
+    List<Location> all = QuarkusTransaction.requiringNew().call(() -> locationRepository.listAll().stream()
+        .map(DbLocation::toLocation)
+        .toList());
+    var byIdentifier = new HashMap<LocationIdentifier, Location>();
+    for (var location : all) {
+      var identifier = LocationIdentifier.parse(location.identification());
+      if (identifier == null) {
+        // Can't be looked up, identifiers not in form PLACE-number are rejected before the lookup
+        LOGGER.warnv("Location [identification={0}] is not in form PLACE-number, skipped", location.identification());
+        continue;
+      }
+      byIdentifier.put(identifier, location);
+    }
+    var loaded = Map.copyOf(byIdentifier);
+    if (!loaded.equals(snapshot.byIdentifier())) {
+      LOGGER.infov("Location registry loaded {0} Locations", loaded.size());
+    }
+    // Identifier order is the order of their strings, the array is binary searched by identification
+    var sorted = byIdentifier.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .map(Map.Entry::getValue)
+        .toArray(Location[]::new);
+    snapshot = new Snapshot(loaded, sorted);
+  }
+
+  /**
+   * @return the Location, or null when there is none
+   */
+  public Location resolveByIdentifier(String identifier) {
+    var parsed = LocationIdentifier.parse(identifier);
+    return parsed == null ? null : snapshot.byIdentifier().get(parsed);
+  }
+
+  /**
+   * @param after only Locations after this identifier, or all when null
+   * @return up to {@code limit} Locations matching the filter, sorted by identifier
+   */
+  public List<Location> search(LocationFilter filter, String after, int limit) {
+    var sorted = snapshot.sorted();
+    var prefix = filter.prefix() == null ? "" : filter.prefix();
+    int from = firstNotBefore(sorted, prefix);
+    if (after != null && after.compareTo(prefix) >= 0) {
+      from = firstNotBefore(sorted, after);
+      if (from < sorted.length && sorted[from].identification().equals(after)) {
+        from++;
+      }
+    }
+    var page = new ArrayList<Location>();
+    for (int i = from; i < sorted.length && page.size() < limit; i++) {
+      var location = sorted[i];
+      if (!location.identification().startsWith(prefix)) {
+        // Identifiers with the prefix are one range of the array
+        break;
+      }
+      if (filter.matches(location)) {
+        page.add(location);
+      }
+    }
+    return page;
+  }
+
+  /**
+   * @return index of the first Location with identification not before the key, or the array length
+   */
+  private static int firstNotBefore(Location[] sorted, String key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (sorted[middle].identification().compareTo(key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
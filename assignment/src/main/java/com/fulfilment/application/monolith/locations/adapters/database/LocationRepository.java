@@ -1,7 +1,6 @@
 package com.fulfilment.application.monolith.locations.adapters.database;
 
 import com.fulfilment.application.monolith.locations.domain.models.Location;
-import com.fulfilment.application.monolith.locations.domain.ports.LocationStore;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.persistence.LockModeType;
@@ -9,21 +8,21 @@ import org.hibernate.LockOptions;
 import org.hibernate.cfg.AvailableSettings;
 
 @ApplicationScoped
-public class LocationRepository implements LocationStore, PanacheRepository<DbLocation> {
+public class LocationRepository implements PanacheRepository<DbLocation> {
 
-  @Override
-  public Location resolveByIdentifier(String identifier) {
+  public Location lockByIdentifier(String identifier) {
+    // Locking read has to go to the database, a locked row is skipped
     return find("identification", identifier)
+        .withLock(LockModeType.PESSIMISTIC_WRITE)
+        .withHint(AvailableSettings.JPA_LOCK_TIMEOUT, LockOptions.SKIP_LOCKED)
         .firstResultOptional()
         .map(DbLocation::toLocation)
         .orElse(null);
   }
 
-  @Override
-  public Location lockByIdentifier(String identifier) {
+  public Location waitForLockByIdentifier(String identifier) {
     return find("identification", identifier)
-        .withLock(LockModeType.WRITE)
-        .withHint(AvailableSettings.JPA_LOCK_TIMEOUT, LockOptions.SKIP_LOCKED)
+        .withLock(LockModeType.PESSIMISTIC_WRITE)
         .firstResultOptional()
         .map(DbLocation::toLocation)
         .orElse(null);
@@ -2,7 +2,10 @@ package com.fulfilment.application.monolith.locations.adapters.restapi;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fulfilment.application.monolith.common.KeysetPagination;
 import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.locations.domain.models.LocationFilter;
+import com.fulfilment.application.monolith.locations.domain.models.LocationResolution;
 import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
 import com.fulfilment.application.monolith.locations.domain.ports.LocationResource;
 import com.fulfilment.application.monolith.stores.StoreResource;
@@ -10,8 +13,10 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
@@ -24,6 +29,9 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.parameters.RequestBody;
+
+import java.util.List;
 
 @Path("location")
 @ApplicationScoped
@@ -56,6 +64,47 @@ public class LocationResourceImpl implements LocationResource {
     return location;
   }
 
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(summary = "Search locations", description = "Returns a page of locations sorted by identifier, "
+      + "optionally with an identifier prefix, within a capacity range and with a minimum number of warehouses, "
+      + "after the given one.")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "Page of locations",
+          content = @Content(mediaType = "application/json", schema = @Schema(implementation = Location.class))),
+      @APIResponse(responseCode = "422", description = "Invalid limit or capacity range"),
+      @APIResponse(responseCode = "500", description = "Internal server error")
+  })
+  public List<Location> search(
+      @Parameter(description = "Start of the location identifier, e.g. AMS") @QueryParam("prefix") String prefix,
+      @Parameter(description = "Minimum max capacity of the locations, inclusive") @QueryParam("minCapacity") Integer minCapacity,
+      @Parameter(description = "Maximum max capacity of the locations, inclusive") @QueryParam("maxCapacity") Integer maxCapacity,
+      @Parameter(description = "Minimum max number of warehouses of the locations, inclusive") @QueryParam("minWarehouses") Integer minWarehouses,
+      @Parameter(description = "Maximum number of locations in the page") @QueryParam("limit") Integer limit,
+      @Parameter(description = "Identifier of the last location of the previous page") @QueryParam("after") String after) {
+    if (minCapacity != null && maxCapacity != null && minCapacity > maxCapacity) {
+      throw new WebApplicationException("Min capacity must not be greater than max capacity.", 422);
+    }
+    int pageSize = limit == null ? KeysetPagination.MAX_LIMIT : KeysetPagination.checkLimit(limit);
+    return locationResolverOperation.search(new LocationFilter(prefix, minCapacity, maxCapacity, minWarehouses), after, pageSize);
+  }
+
+  @POST
+  @Path("resolve")
+  @Produces(MediaType.APPLICATION_JSON)
+  @Operation(summary = "Resolve locations by identifiers",
+      description = "Returns the found locations and the invalid and unknown identifiers, in one response")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "Successful, identifiers resolved",
+          content = @Content(mediaType = "application/json", schema = @Schema(implementation = LocationResolution.class))),
+      @APIResponse(responseCode = "400", description = "No identifiers or too many identifiers"),
+      @APIResponse(responseCode = "500", description = "Internal server error")
+  })
+  public LocationResolution resolve(
+      @RequestBody(description = "Identifiers of the locations", required = true) List<String> identifiers) {
+    return locationResolverOperation.resolveAll(identifiers);
+  }
+
   @Provider
   public static class ErrorMapper implements ExceptionMapper<Exception> {
 
@@ -0,0 +1,22 @@
+package com.fulfilment.application.monolith.locations.domain.models;
+
+/**
+ * Filter of listed Locations, a null field doesn't filter.
+ *
+ * @param prefix        start of the identifier, e.g. the place
+ * @param minCapacity   inclusive, of the max capacity of the Location
+ * @param maxCapacity   inclusive, of the max capacity of the Location
+ * @param minWarehouses inclusive, of the max number of warehouses of the Location
+ */
+public record LocationFilter(
+    String prefix,
+    Integer minCapacity,
+    Integer maxCapacity,
+    Integer minWarehouses) {
+
+  public boolean matches(Location location) {
+    return (minCapacity == null || location.maxCapacity() >= minCapacity)
+        && (maxCapacity == null || location.maxCapacity() <= maxCapacity)
+        && (minWarehouses == null || location.maxNumberOfWarehouses() >= minWarehouses);
+  }
+}
@@ -0,0 +1,100 @@
+package com.fulfilment.application.monolith.locations.domain.models;
+
+/**
+ * Location identifier in form PLACE-number, e.g. ZWOLLE-001: 3 to 12 letters A-Z, a dash and 3 digits.
+ * <p>
+ * The place is packed into a long, a base-27 number with a digit per letter position (A=1 .. Z=26, 0 past the end),
+ * the number is kept as an int. Equality and hashing compare two primitives instead of the characters,
+ * and the order of identifiers is the order of their strings.
+ * Validation and parsing read the characters once, validation allocates nothing and parsing only the identifier.
+ */
+public record LocationIdentifier(long place, int number) implements Comparable<LocationIdentifier> {
+
+  public static final int MIN_PLACE_LENGTH = 3;
+  public static final int MAX_PLACE_LENGTH = 12;
+  private static final int NUMBER_LENGTH = 3;
+  private static final int RADIX = 27;
+
+  /**
+   * @return the identifier, or null when the value is not in form PLACE-number
+   */
+  public static LocationIdentifier parse(CharSequence value) {
+    long place = packPlace(value);
+    return place < 0 ? null : new LocationIdentifier(place, number(value));
+  }
+
+  public static boolean isValid(CharSequence value) {
+    return packPlace(value) >= 0;
+  }
+
+  /**
+   * @return the packed place, or -1 when the value is not in form PLACE-number
+   */
+  private static long packPlace(CharSequence value) {
+    if (value == null) {
+      return -1;
+    }
+    int length = value.length();
+    int placeLength = length - NUMBER_LENGTH - 1;
+    if (placeLength < MIN_PLACE_LENGTH || placeLength > MAX_PLACE_LENGTH || value.charAt(placeLength) != '-') {
+      return -1;
+    }
+    long place = 0;
+    for (int i = 0; i < MAX_PLACE_LENGTH; i++) {
+      int digit = 0;
+      if (i < placeLength) {
+        char c = value.charAt(i);
+        if (c < 'A' || c > 'Z') {
+          return -1;
+        }
+        digit = c - 'A' + 1;
+      }
+      place = place * RADIX + digit;
+    }
+    for (int i = placeLength + 1; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+    }
+    return place;
+  }
+
+  private static int number(CharSequence value) {
+    int number = 0;
+    for (int i = value.length() - NUMBER_LENGTH; i < value.length(); i++) {
+      number = number * 10 + value.charAt(i) - '0';
+    }
+    return number;
+  }
+
+  @Override
+  public int compareTo(LocationIdentifier other) {
+    int byPlace = Long.compare(place, other.place);
+    return byPlace != 0 ? byPlace : Integer.compare(number, other.number);
+  }
+
+  @Override
+  public String toString() {
+    var identifier = new StringBuilder(MAX_PLACE_LENGTH + NUMBER_LENGTH + 1);
+    long divisor = 1;
+    for (int i = 1; i < MAX_PLACE_LENGTH; i++) {
+      divisor *= RADIX;
+    }
+    for (; divisor > 0; divisor /= RADIX) {
+      int digit = (int) (place / divisor % RADIX);
+      if (digit == 0) {
+        break;
+      }
+      identifier.append((char) ('A' + digit - 1));
+    }
+    identifier.append('-');
+    if (number < 100) {
+      identifier.append('0');
+    }
+    if (number < 10) {
+      identifier.append('0');
+    }
+    return identifier.append(number).toString();
+  }
+}
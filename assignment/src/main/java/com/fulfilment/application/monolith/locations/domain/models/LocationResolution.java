@@ -0,0 +1,13 @@
+package com.fulfilment.application.monolith.locations.domain.models;
+
+import java.util.List;
+
+/**
+ * Result of resolving many identifiers at once, every distinct requested identifier is in one of the lists.
+ *
+ * @param locations found Locations, in request order
+ * @param invalid   identifiers not in form PLACE-number
+ * @param unknown   valid identifiers of no Location
+ */
+public record LocationResolution(List<Location> locations, List<String> invalid, List<String> unknown) {
+}
@@ -1,9 +1,30 @@
 package com.fulfilment.application.monolith.locations.domain.ports;
 
 import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.locations.domain.models.LocationFilter;
+import com.fulfilment.application.monolith.locations.domain.models.LocationResolution;
+
+import java.util.List;
 
 public interface LocationResolverOperation {
   Location resolveByIdentifier(String identifier);
 
   Location lockByIdentifier(String identifier);
+
+  /**
+   * Like {@link #lockByIdentifier}, but waits for a lock held by another transaction instead of skipping the row.
+   */
+  Location waitForLockByIdentifier(String identifier);
+
+  /**
+   * Resolves every identifier in one call, invalid and unknown identifiers are reported instead of failing.
+   */
+  LocationResolution resolveAll(List<String> identifiers);
+
+  /**
+   * Locations matching the filter, sorted by identifier.
+   *
+   * @param after only Locations after this identifier, or all when null
+   */
+  List<Location> search(LocationFilter filter, String after, int limit);
 }
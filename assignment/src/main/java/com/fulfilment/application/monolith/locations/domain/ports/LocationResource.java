@@ -1,7 +1,15 @@
 package com.fulfilment.application.monolith.locations.domain.ports;
 
 import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.locations.domain.models.LocationResolution;
+
+import java.util.List;
 
 public interface LocationResource {
   Location getByIdentifier(String identifier);
+
+  LocationResolution resolve(List<String> identifiers);
+
+  List<Location> search(String prefix, Integer minCapacity, Integer maxCapacity, Integer minWarehouses,
+                        Integer limit, String after);
 }
\ No newline at end of file
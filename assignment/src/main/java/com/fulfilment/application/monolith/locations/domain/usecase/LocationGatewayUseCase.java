@@ -1,32 +1,42 @@
 package com.fulfilment.application.monolith.locations.domain.usecase;
 
+import com.fulfilment.application.monolith.locations.adapters.database.LocationRegistry;
 import com.fulfilment.application.monolith.locations.adapters.database.LocationRepository;
 import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.locations.domain.models.LocationFilter;
+import com.fulfilment.application.monolith.locations.domain.models.LocationIdentifier;
+import com.fulfilment.application.monolith.locations.domain.models.LocationResolution;
 import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 @ApplicationScoped
 public class LocationGatewayUseCase implements LocationResolverOperation {
 
   private static final String IDENTIFICATION_NOT_VALID =
       "Location should be in form PLACE-number, example: 'ZWOLLE-001'";
-  private static final Predicate<String> IDENTIFICATION_PATTERN =
-      Pattern.compile("^[A-Z]{3,12}-[0-9]{3}$").asPredicate();
 
+  @Inject
+  private LocationRegistry locationRegistry;
   @Inject
   private LocationRepository locationRepository;
 
+  @ConfigProperty(name = "location.resolve.max-identifiers", defaultValue = "1000")
+  int maxIdentifiers;
+
   @Override
   public Location resolveByIdentifier(String identifier) {
     if (!validIdentifier(identifier)) {
       throw new WebApplicationException(IDENTIFICATION_NOT_VALID, 400);
     }
-    return locationRepository.resolveByIdentifier(identifier);
+    // Served from memory, no database round trip
+    return locationRegistry.resolveByIdentifier(identifier);
   }
 
   @Override
@@ -37,9 +47,50 @@ public class LocationGatewayUseCase implements LocationResolverOperation {
     return locationRepository.lockByIdentifier(identifier);
   }
 
+  @Override
+  public Location waitForLockByIdentifier(String identifier) {
+    if (!validIdentifier(identifier)) {
+      throw new WebApplicationException(IDENTIFICATION_NOT_VALID, 400);
+    }
+    return locationRepository.waitForLockByIdentifier(identifier);
+  }
+
+  @Override
+  public LocationResolution resolveAll(List<String> identifiers) {
+    if (identifiers == null || identifiers.isEmpty()) {
+      throw new WebApplicationException("Can not resolve Locations; No identifiers provided", 400);
+    }
+    if (identifiers.size() > maxIdentifiers) {
+      throw new WebApplicationException("Can not resolve Locations; Too many identifiers [identifiers=%s, max=%s]"
+          .formatted(identifiers.size(), maxIdentifiers), 400);
+    }
+    var locations = new ArrayList<Location>();
+    var invalid = new ArrayList<String>();
+    var unknown = new ArrayList<String>();
+    // Served from memory like a single lookup, duplicates are resolved once
+    for (var identifier : new LinkedHashSet<>(identifiers)) {
+      if (!validIdentifier(identifier)) {
+        invalid.add(identifier);
+        continue;
+      }
+      var location = locationRegistry.resolveByIdentifier(identifier);
+      if (location == null) {
+        unknown.add(identifier);
+      } else {
+        locations.add(location);
+      }
+    }
+    return new LocationResolution(locations, invalid, unknown);
+  }
+
+  @Override
+  public List<Location> search(LocationFilter filter, String after, int limit) {
+    // Served from the sorted Locations in memory, no database query
+    return locationRegistry.search(filter, after, limit);
+  }
+
   private static boolean validIdentifier(String identifier) {
-    return identifier != null
-        && !identifier.isEmpty()
-        && IDENTIFICATION_PATTERN.test(identifier);
+    // Same as ^[A-Z]{3,12}-[0-9]{3}$, without the regex matcher
+    return LocationIdentifier.isValid(identifier);
   }
 }
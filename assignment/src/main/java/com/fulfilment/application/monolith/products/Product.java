@@ -1,10 +1,12 @@
 package com.fulfilment.application.monolith.products;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Version;
 import java.math.BigDecimal;
 
 @Entity
@@ -13,7 +15,8 @@ public class Product {
 
   @Id @GeneratedValue public Long id;
 
-  @Column(length = 40, unique = true)
+  // Keyset pagination by name never returns rows with a null name
+  @Column(length = 40, unique = true, nullable = false)
   public String name;
 
   @Column(nullable = true)
@@ -24,6 +27,9 @@ public class Product {
 
   public int stock;
 
+  // Sent as ETag, not part of the JSON body
+  @Version @JsonIgnore public long version;
+
   public Product() {}
 
   public Product(String name) {
@@ -2,9 +2,13 @@ package com.fulfilment.application.monolith.products;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fulfilment.application.monolith.common.EntityTags;
+import com.fulfilment.application.monolith.common.JsonArrayStreamingOutput;
+import com.fulfilment.application.monolith.common.KeysetPagination;
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -13,11 +17,15 @@ import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
 import java.util.List;
+import org.hibernate.jpa.AvailableHints;
 import org.jboss.logging.Logger;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
@@ -35,33 +43,72 @@ public class ProductResource {
   @Inject
   ProductRepository productRepository;
 
+  @Inject
+  ObjectMapper objectMapper;
+
   private static final Logger LOGGER = Logger.getLogger(ProductResource.class.getName());
 
   @GET
-  @Operation(summary = "Get all products", description = "Returns a list of all products sorted by name.")
+  @Operation(summary = "Get all products", description = "Returns a list of all products sorted by name. "
+      + "With a limit returns a single page of products with the name after the given one.")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "Successfully retrieved list",
+          content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class))),
+      @APIResponse(responseCode = "422", description = "Invalid limit")
+  })
+  public List<Product> get(
+      @Parameter(description = "Maximum number of products in the page") @QueryParam("limit") Integer limit,
+      @Parameter(description = "Name of the last product of the previous page") @QueryParam("after") String after) {
+    if (limit == null) {
+      return productRepository.listAll(Sort.by("name"));
+    }
+    var page = after == null
+        ? productRepository.findAll(Sort.by("name"))
+        : productRepository.find("name > ?1", Sort.by("name"), after);
+    return page.page(0, KeysetPagination.checkLimit(limit)).list();
+  }
+
+  @GET
+  @Path("stream")
+  @Operation(summary = "Stream all products", description = "Returns a list of all products sorted by name. "
+      + "Products are written to the response while they are read from the database.")
   @APIResponses(value = {
       @APIResponse(responseCode = "200", description = "Successfully retrieved list",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class)))
   })
-  public List<Product> get() {
-    return productRepository.listAll(Sort.by("name"));
+  public Response stream() {
+    var products = new JsonArrayStreamingOutput<>(objectMapper, () -> productRepository.findAll(Sort.by("name"))
+        .withHint(AvailableHints.HINT_FETCH_SIZE, JsonArrayStreamingOutput.FETCH_SIZE)
+        .withHint(AvailableHints.HINT_READ_ONLY, true)
+        .stream()
+        // Written Products are not needed anymore, keep the persistence context empty
+        .peek(productRepository.getEntityManager()::detach));
+    return Response.ok(products).build();
   }
 
   @GET
   @Path("{id}")
-  @Operation(summary = "Get product by ID", description = "Returns a single product for the given ID.")
+  @Operation(summary = "Get product by ID", description = "Returns a single product for the given ID. "
+      + "Returns no body when the product version matches If-None-Match.")
   @APIResponses(value = {
       @APIResponse(responseCode = "200", description = "Product found",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class))),
+      @APIResponse(responseCode = "304", description = "Product not modified"),
       @APIResponse(responseCode = "404", description = "Product not found")
   })
-  public Product getSingle(
-      @Parameter(description = "ID of the product to retrieve", required = true) Long id) {
+  public Response getSingle(
+      @Parameter(description = "ID of the product to retrieve", required = true) Long id,
+      @Context Request request) {
     Product entity = productRepository.findById(id);
     if (entity == null) {
       throw new WebApplicationException("Product with id of " + id + " does not exist.", 404);
     }
-    return entity;
+    var tag = EntityTags.of(entity.version);
+    var notModified = request.evaluatePreconditions(tag);
+    if (notModified != null) {
+      return notModified.build();
+    }
+    return Response.ok(entity).tag(tag).build();
   }
 
   @POST
@@ -77,9 +124,12 @@ public class ProductResource {
     if (product.id != null) {
       throw new WebApplicationException("Id was invalidly set on request.", 422);
     }
+    if (product.name == null) {
+      throw new WebApplicationException("Product Name was not set on request.", 422);
+    }
 
     productRepository.persist(product);
-    return Response.ok(product).status(201).build();
+    return Response.ok(product).status(201).tag(EntityTags.of(product.version)).build();
   }
 
   @PUT
@@ -90,11 +140,14 @@ public class ProductResource {
       @APIResponse(responseCode = "200", description = "Product updated successfully",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Product.class))),
       @APIResponse(responseCode = "404", description = "Product not found"),
+      @APIResponse(responseCode = "409", description = "Product was changed concurrently"),
+      @APIResponse(responseCode = "412", description = "Product version doesn't match If-Match"),
       @APIResponse(responseCode = "422", description = "Invalid input")
   })
-  public Product update(
+  public Response update(
       @Parameter(description = "ID of the product to update", required = true) Long id,
-      @Parameter(description = "Updated product object", required = true) Product product) {
+      @Parameter(description = "Updated product object", required = true) Product product,
+      @Context Request request) {
     if (product.name == null) {
       throw new WebApplicationException("Product Name was not set on request.", 422);
     }
@@ -104,15 +157,19 @@ public class ProductResource {
     if (entity == null) {
       throw new WebApplicationException("Product with id of " + id + " does not exist.", 404);
     }
+    if (request.evaluatePreconditions(EntityTags.of(entity.version)) != null) {
+      throw new WebApplicationException("Product with id of " + id + " was changed; Version doesn't match If-Match.", 412);
+    }
 
     entity.name = product.name;
     entity.description = product.description;
     entity.price = product.price;
     entity.stock = product.stock;
 
-    productRepository.persist(entity);
+    // Version is checked and incremented by the flush
+    productRepository.persistAndFlush(entity);
 
-    return entity;
+    return Response.ok(entity).tag(EntityTags.of(entity.version)).build();
   }
 
   @DELETE
@@ -144,6 +201,8 @@ public class ProductResource {
       int code = 500;
       if (exception instanceof WebApplicationException) {
         code = ((WebApplicationException) exception).getResponse().getStatus();
+      } else if (exception instanceof OptimisticLockException) {
+        code = 409;
       }
 
       ObjectNode exceptionJson = objectMapper.createObjectNode();
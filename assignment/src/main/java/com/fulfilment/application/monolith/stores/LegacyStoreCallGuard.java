@@ -0,0 +1,326 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Protects callers from a slow or failing legacy system.
+ * <ul>
+ *   <li>Bulkhead: legacy calls run on a dedicated bounded executor, calls over the queue limit are rejected.</li>
+ *   <li>Timeout: every call has a deadline, time spent in the queue counts towards it.</li>
+ *   <li>Circuit breaker: when the failure ratio over the last calls reaches the threshold,
+ *   calls fail fast for a delay, then a single trial call decides whether to close the breaker.</li>
+ *   <li>Hedging, off by default: a slow update (full Store snapshot) is sent a second time and the first successful
+ *   attempt wins. Creates are never hedged.</li>
+ * </ul>
+ * Cancelling an attempt, after a timeout or when a hedged attempt won, doesn't recall a request already sent.
+ * The legacy call carries no version the legacy system could reject a stale snapshot by, so the next call of
+ * the same Store is rejected until every earlier attempt finished. Otherwise a retry or a newer update could be
+ * overtaken by the old request.
+ */
+@ApplicationScoped
+public class LegacyStoreCallGuard {
+
+  enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  @Inject
+  LegacyStoreManagerGateway legacyStoreManagerGateway;
+  @Inject
+  MeterRegistry registry;
+
+  @ConfigProperty(name = "store.legacy.bulkhead.max-concurrent-calls", defaultValue = "8")
+  int maxConcurrentCalls;
+  @ConfigProperty(name = "store.legacy.bulkhead.queue-size", defaultValue = "64")
+  int queueSize;
+  @ConfigProperty(name = "store.legacy.timeout", defaultValue = "2s")
+  Duration timeout;
+  @ConfigProperty(name = "store.legacy.circuit-breaker.request-volume", defaultValue = "20")
+  int requestVolume;
+  @ConfigProperty(name = "store.legacy.circuit-breaker.failure-ratio", defaultValue = "0.5")
+  double failureRatio;
+  @ConfigProperty(name = "store.legacy.circuit-breaker.delay", defaultValue = "10s")
+  Duration breakerDelay;
+  @ConfigProperty(name = "store.legacy.hedge.enabled", defaultValue = "false")
+  boolean hedgeEnabled;
+  @ConfigProperty(name = "store.legacy.hedge.delay", defaultValue = "500ms")
+  Duration hedgeDelay;
+
+  private ThreadPoolExecutor executor;
+  private Timer callTimer;
+  // Completes when the attempts still running after the last call of the Store returned have finished
+  private final Map<Long, CompletableFuture<Void>> unfinishedAttempts = new ConcurrentHashMap<>();
+
+  // Circuit breaker state, guarded by this
+  private State state = State.CLOSED;
+  private long openedAtNanos;
+  private boolean trialInFlight;
+  private boolean[] outcomes;
+  private int outcomeIndex;
+  private int outcomeCount;
+  private int failureCount;
+
+  @PostConstruct
+  void init() {
+    var threadNumber = new AtomicInteger();
+    executor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        runnable -> {
+          var thread = new Thread(runnable, "legacy-store-call-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+    outcomes = new boolean[requestVolume];
+    callTimer = Timer.builder("legacy_store_call_time")
+        .description("Time taken by calls to the legacy Store system")
+        .publishPercentiles(0.5, 0.95, 0.99)
+        .register(registry);
+    Gauge.builder("legacy_store_circuit_breaker_state", this, guard -> guard.state().ordinal())
+        .description("Legacy Store system circuit breaker state: 0 closed, 1 open, 2 half-open")
+        .register(registry);
+    Gauge.builder("legacy_store_bulkhead_queue_size", executor, pool -> pool.getQueue().size())
+        .description("Legacy Store system calls waiting for a free bulkhead slot")
+        .register(registry);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  public void createStoreOnLegacySystem(Store store) {
+    call(store.id, () -> legacyStoreManagerGateway.createStoreOnLegacySystem(store), false);
+  }
+
+  public void updateStoreOnLegacySystem(Store store) {
+    call(store.id, () -> legacyStoreManagerGateway.updateStoreOnLegacySystem(store), hedgeEnabled);
+  }
+
+  private void call(Long storeId, Runnable legacyCall, boolean hedged) {
+    if (unfinishedAttempts.containsKey(storeId)) {
+      registry.counter("legacy_store_calls_rejected", "reason", "unfinished_attempt").increment();
+      throw new WebApplicationException("Earlier legacy Store system call of the Store is still running", 503);
+    }
+    acquirePermission();
+    long deadline = System.nanoTime() + timeout.toNanos();
+    var attempts = new ArrayList<Attempt>(2);
+    var sample = Timer.start(registry);
+    boolean recorded = false;
+    try {
+      attempts.add(submit(legacyCall));
+      var result = attempts.get(0).completion();
+      if (hedged && !awaitQuietly(result, Math.min(hedgeDelay.toNanos(), deadline - System.nanoTime()))) {
+        result = hedge(legacyCall, attempts);
+      }
+      result.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+      recorded = true;
+      onSuccess();
+    } catch (TimeoutException e) {
+      recorded = true;
+      onFailure();
+      registry.counter("legacy_store_call_timeouts").increment();
+      throw new WebApplicationException("Legacy Store system didn't respond in " + timeout, 504);
+    } catch (ExecutionException e) {
+      recorded = true;
+      onFailure();
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new WebApplicationException(e.getCause(), 502);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WebApplicationException("Interrupted while calling legacy Store system", 503);
+    } finally {
+      if (!recorded) {
+        // Rejected by bulkhead or interrupted, legacy system wasn't asked
+        releasePermission();
+      }
+      cancel(storeId, attempts);
+      sample.stop(callTimer);
+    }
+  }
+
+  private void cancel(Long storeId, List<Attempt> attempts) {
+    var unfinished = attempts.stream()
+        .filter(Attempt::cancel)
+        .map(Attempt::completion)
+        .toArray(CompletableFuture<?>[]::new);
+    if (unfinished.length == 0) {
+      return;
+    }
+    var finished = CompletableFuture.allOf(unfinished);
+    unfinishedAttempts.put(storeId, finished);
+    finished.whenComplete((ignored, error) -> unfinishedAttempts.remove(storeId, finished));
+  }
+
+  private CompletableFuture<Void> hedge(Runnable legacyCall, List<Attempt> attempts) {
+    Attempt hedge;
+    try {
+      hedge = submit(legacyCall);
+    } catch (WebApplicationException e) {
+      // Bulkhead is full, keep waiting for the first attempt
+      return attempts.get(0).completion();
+    }
+    registry.counter("legacy_store_hedged_calls").increment();
+    attempts.add(hedge);
+    // First successful attempt wins, fail only when both attempts failed
+    var result = new CompletableFuture<Void>();
+    var pending = new AtomicInteger(attempts.size());
+    for (var attempt : attempts) {
+      attempt.completion().whenComplete((ignored, error) -> {
+        if (error == null) {
+          result.complete(null);
+        } else if (pending.decrementAndGet() == 0) {
+          result.completeExceptionally(error);
+        }
+      });
+    }
+    return result;
+  }
+
+  private Attempt submit(Runnable legacyCall) {
+    var completion = new CompletableFuture<Void>();
+    var started = new AtomicBoolean();
+    try {
+      Future<?> future = executor.submit(() -> {
+        if (!started.compareAndSet(false, true)) {
+          // Cancelled while queued
+          return;
+        }
+        try {
+          legacyCall.run();
+          completion.complete(null);
+        } catch (Throwable e) {
+          completion.completeExceptionally(e);
+        }
+      });
+      return new Attempt(future, completion, started);
+    } catch (RejectedExecutionException e) {
+      registry.counter("legacy_store_calls_rejected", "reason", "bulkhead").increment();
+      throw new WebApplicationException("Legacy Store system bulkhead is full", 503);
+    }
+  }
+
+  private static boolean awaitQuietly(CompletableFuture<Void> result, long nanos) throws InterruptedException {
+    try {
+      result.get(Math.max(nanos, 0), TimeUnit.NANOSECONDS);
+      return true;
+    } catch (TimeoutException e) {
+      return false;
+    } catch (ExecutionException e) {
+      // Failed fast, no reason to hedge
+      return true;
+    }
+  }
+
+  synchronized State state() {
+    return state;
+  }
+
+  private synchronized void acquirePermission() {
+    if (state == State.OPEN && System.nanoTime() - openedAtNanos >= breakerDelay.toNanos()) {
+      state = State.HALF_OPEN;
+      trialInFlight = false;
+    }
+    if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+      registry.counter("legacy_store_calls_rejected", "reason", "circuit_open").increment();
+      throw new WebApplicationException("Legacy Store system circuit breaker is open", 503);
+    }
+    if (state == State.HALF_OPEN) {
+      trialInFlight = true;
+    }
+  }
+
+  private synchronized void releasePermission() {
+    if (state == State.HALF_OPEN) {
+      trialInFlight = false;
+    }
+  }
+
+  private synchronized void onSuccess() {
+    if (state == State.HALF_OPEN) {
+      close();
+      return;
+    }
+    record(false);
+  }
+
+  private synchronized void onFailure() {
+    if (state == State.HALF_OPEN) {
+      open();
+      return;
+    }
+    record(true);
+    if (outcomeCount >= requestVolume && failureCount >= failureRatio * outcomeCount) {
+      open();
+    }
+  }
+
+  // Rolling window of the last requestVolume outcomes
+  private void record(boolean failure) {
+    if (outcomeCount == requestVolume && outcomes[outcomeIndex]) {
+      failureCount--;
+    }
+    outcomes[outcomeIndex] = failure;
+    if (failure) {
+      failureCount++;
+    }
+    outcomeIndex = (outcomeIndex + 1) % requestVolume;
+    outcomeCount = Math.min(outcomeCount + 1, requestVolume);
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAtNanos = System.nanoTime();
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    outcomes = new boolean[requestVolume];
+    outcomeIndex = 0;
+    outcomeCount = 0;
+    failureCount = 0;
+  }
+
+  private record Attempt(Future<?> future, CompletableFuture<Void> completion, AtomicBoolean started) {
+
+    /**
+     * @return true when the legacy call already started and may still reach the legacy system
+     */
+    boolean cancel() {
+      if (started.compareAndSet(false, true)) {
+        future.cancel(false);
+        return false;
+      }
+      future.cancel(true);
+      return !completion.isDone();
+    }
+  }
+}
@@ -0,0 +1,299 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of Store changes sent to the legacy system.
+ * <p>
+ * Records are appended to a preallocated, memory-mapped segment file:
+ * {@code [int payloadLength][int crc32c][byte type][long storeId][int quantityProductsInStock][name UTF-8]}.
+ * A zero length marks the end of written data, so a segment can be replayed without an index.
+ * <p>
+ * Appends only copy bytes into the mapped segment. A single flusher thread forces written data to disk
+ * once per commit interval or as soon as a group of records is pending ("group commit"),
+ * so many concurrent appends share one {@code force()}.
+ * When a record doesn't fit into the current segment, the segment is forced and the next one is created.
+ * Every start opens a new segment. Only the latest {@code segmentsKept} segments are kept, older ones are deleted
+ * when a segment is opened.
+ */
+public class LegacyStoreJournal implements AutoCloseable {
+
+  static final String SEGMENT_PREFIX = "segment-";
+  static final String SEGMENT_SUFFIX = ".journal";
+  // payloadLength + crc
+  static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+  // type + storeId + quantityProductsInStock
+  static final int PAYLOAD_FIXED_SIZE = Byte.BYTES + Long.BYTES + Integer.BYTES;
+
+  public record Entry(StoreOutboxEvent.Type type, long storeId, String name, int quantityProductsInStock) {
+
+    static Entry of(StoreOutboxEvent.Type type, Store store) {
+      return new Entry(type, store.id == null ? 0 : store.id, store.name, store.quantityProductsInStock);
+    }
+  }
+
+  private final Path directory;
+  private final int segmentSize;
+  private final Duration commitInterval;
+  private final int groupCommitSize;
+  private final int segmentsKept;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition pendingWrites = lock.newCondition();
+  private final Condition durableWrites = lock.newCondition();
+  private final Thread flusher;
+
+  private long segmentNumber;
+  private FileChannel channel;
+  private MappedByteBuffer segment;
+  // Positions are global: segmentNumber * segmentSize + position inside the segment
+  private long appendedPosition;
+  private long durablePosition;
+  private int pendingRecords;
+  private long forceCount;
+  private volatile boolean closed;
+
+  public LegacyStoreJournal(Path directory, int segmentSize, Duration commitInterval, int groupCommitSize,
+                            int segmentsKept) {
+    if (segmentsKept < 1) {
+      throw new IllegalArgumentException("At least the current segment must be kept [segmentsKept=%s]".formatted(segmentsKept));
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.commitInterval = commitInterval;
+    this.groupCommitSize = groupCommitSize;
+    this.segmentsKept = segmentsKept;
+    try {
+      Files.createDirectories(directory);
+      openSegment(lastSegmentNumber() + 1);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can not open legacy Store journal in " + directory, e);
+    }
+    this.flusher = new Thread(this::flushLoop, "legacy-store-journal-flusher");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  /**
+   * Appends entry and waits until it is durable on disk.
+   */
+  public void appendAndSync(Entry entry) {
+    awaitDurable(append(entry));
+  }
+
+  /**
+   * Appends entry to the mapped segment without waiting for disk.
+   *
+   * @return position the journal has to be forced to, for the entry to be durable
+   */
+  public long append(Entry entry) {
+    byte[] name = entry.name() == null ? new byte[0] : entry.name().getBytes(StandardCharsets.UTF_8);
+    int payloadLength = PAYLOAD_FIXED_SIZE + name.length;
+    int recordLength = RECORD_HEADER_SIZE + payloadLength;
+    if (recordLength + Integer.BYTES > segmentSize) {
+      throw new IllegalArgumentException("Journal record doesn't fit into segment [recordLength=%s, segmentSize=%s]"
+          .formatted(recordLength, segmentSize));
+    }
+
+    var payload = ByteBuffer.allocate(payloadLength)
+        .put((byte) entry.type().ordinal())
+        .putLong(entry.storeId())
+        .putInt(entry.quantityProductsInStock())
+        .put(name)
+        .flip();
+    var crc = new CRC32C();
+    crc.update(payload.duplicate());
+
+    lock.lock();
+    try {
+      ensureOpen();
+      // Keep space for the zero length end marker
+      if (segment.remaining() < recordLength + Integer.BYTES) {
+        rollSegment();
+      }
+      segment.putInt(payloadLength).putInt((int) crc.getValue()).put(payload);
+      appendedPosition = globalPosition();
+      if (++pendingRecords >= groupCommitSize) {
+        pendingWrites.signal();
+      }
+      return appendedPosition;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can not roll legacy Store journal segment in " + directory, e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void awaitDurable(long position) {
+    lock.lock();
+    try {
+      while (durablePosition < position) {
+        ensureOpen();
+        durableWrites.await();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for legacy Store journal commit", e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public Path currentSegment() {
+    lock.lock();
+    try {
+      return segmentPath(segmentNumber);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Number of {@code force()} calls since the journal was opened.
+   */
+  public long forceCount() {
+    lock.lock();
+    try {
+      return forceCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      force();
+      pendingWrites.signalAll();
+      durableWrites.signalAll();
+      channel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void flushLoop() {
+    lock.lock();
+    try {
+      while (!closed) {
+        if (pendingRecords < groupCommitSize) {
+          pendingWrites.await(commitInterval.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (closed || durablePosition >= appendedPosition) {
+          continue;
+        }
+        var buffer = segment;
+        int from = (int) (durablePosition - segmentNumber * segmentSize);
+        int to = segment.position();
+        long target = appendedPosition;
+        pendingRecords = 0;
+        // Appends continue while the batch is forced, they join the next group
+        lock.unlock();
+        try {
+          buffer.force(from, to - from);
+        } finally {
+          lock.lock();
+        }
+        forceCount++;
+        durablePosition = Math.max(durablePosition, target);
+        durableWrites.signalAll();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Must be called under lock
+  private void force() {
+    int from = (int) (durablePosition - segmentNumber * segmentSize);
+    int to = segment.position();
+    if (from < to) {
+      segment.force(from, to - from);
+      forceCount++;
+    }
+    durablePosition = appendedPosition;
+    pendingRecords = 0;
+    durableWrites.signalAll();
+  }
+
+  // Must be called under lock
+  private void rollSegment() throws IOException {
+    force();
+    channel.close();
+    openSegment(segmentNumber + 1);
+    // Nothing was written to the new segment yet
+    appendedPosition = globalPosition();
+    durablePosition = appendedPosition;
+  }
+
+  private void openSegment(long number) throws IOException {
+    segmentNumber = number;
+    channel = FileChannel.open(segmentPath(number),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    // Mapping preallocates the file, appends never grow it
+    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    appendedPosition = globalPosition();
+    durablePosition = appendedPosition;
+    deleteOldSegments();
+  }
+
+  private void deleteOldSegments() throws IOException {
+    long oldestKept = segmentNumber - segmentsKept + 1;
+    for (long number : segmentNumbers().filter(number -> number < oldestKept).toArray()) {
+      Files.deleteIfExists(segmentPath(number));
+    }
+  }
+
+  private long globalPosition() {
+    return segmentNumber * segmentSize + segment.position();
+  }
+
+  private long lastSegmentNumber() throws IOException {
+    return segmentNumbers().max().orElse(-1);
+  }
+
+  private LongStream segmentNumbers() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      // Collected before the directory stream is closed
+      return LongStream.of(files
+          .map(file -> file.getFileName().toString())
+          .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+          .mapToLong(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+          .toArray());
+    }
+  }
+
+  private Path segmentPath(long number) {
+    return directory.resolve(SEGMENT_PREFIX + "%020d".formatted(number) + SEGMENT_SUFFIX);
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Legacy Store journal is closed");
+    }
+  }
+}
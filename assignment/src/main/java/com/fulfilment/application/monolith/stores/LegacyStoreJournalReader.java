@@ -0,0 +1,68 @@
+package com.fulfilment.application.monolith.stores;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import static com.fulfilment.application.monolith.stores.LegacyStoreJournal.PAYLOAD_FIXED_SIZE;
+import static com.fulfilment.application.monolith.stores.LegacyStoreJournal.RECORD_HEADER_SIZE;
+
+/**
+ * Replays a {@link LegacyStoreJournal} segment, verifying every record checksum.
+ * Used to verify what was sent to the legacy system instead of reading every write back.
+ */
+public final class LegacyStoreJournalReader {
+
+  private LegacyStoreJournalReader() {
+  }
+
+  /**
+   * @return number of replayed records
+   * @throws IllegalStateException when a record is truncated or its checksum doesn't match
+   */
+  public static long replay(Path segmentFile, Consumer<LegacyStoreJournal.Entry> consumer) {
+    try (var channel = FileChannel.open(segmentFile, StandardOpenOption.READ)) {
+      MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      var types = StoreOutboxEvent.Type.values();
+      var crc = new CRC32C();
+      long records = 0;
+      while (segment.remaining() >= RECORD_HEADER_SIZE) {
+        int position = segment.position();
+        int payloadLength = segment.getInt();
+        if (payloadLength == 0) {
+          // End of written data in a preallocated segment
+          break;
+        }
+        int checksum = segment.getInt();
+        if (payloadLength < PAYLOAD_FIXED_SIZE || payloadLength > segment.remaining()) {
+          throw new IllegalStateException("Truncated legacy Store journal record [segment=%s, position=%s, payloadLength=%s]"
+              .formatted(segmentFile, position, payloadLength));
+        }
+        var payload = segment.slice(segment.position(), payloadLength);
+        crc.reset();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+          throw new IllegalStateException("Corrupted legacy Store journal record [segment=%s, position=%s]"
+              .formatted(segmentFile, position));
+        }
+        var type = types[payload.get()];
+        long storeId = payload.getLong();
+        int quantityProductsInStock = payload.getInt();
+        var name = new byte[payload.remaining()];
+        payload.get(name);
+        consumer.accept(new LegacyStoreJournal.Entry(type, storeId, new String(name, StandardCharsets.UTF_8), quantityProductsInStock));
+        segment.position(segment.position() + payloadLength);
+        records++;
+      }
+      return records;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can not replay legacy Store journal segment " + segmentFile, e);
+    }
+  }
+}
@@ -1,22 +1,66 @@
 package com.fulfilment.application.monolith.stores;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 
 @ApplicationScoped
 public class LegacyStoreManagerGateway {
 
+  @ConfigProperty(name = "store.legacy.journal.enabled", defaultValue = "true")
+  boolean journalEnabled;
+  @ConfigProperty(name = "store.legacy.journal.directory", defaultValue = "${java.io.tmpdir}/legacy-store-journal")
+  Path journalDirectory;
+  @ConfigProperty(name = "store.legacy.journal.segment-size", defaultValue = "67108864")
+  int journalSegmentSize;
+  @ConfigProperty(name = "store.legacy.journal.commit-interval", defaultValue = "5ms")
+  Duration journalCommitInterval;
+  @ConfigProperty(name = "store.legacy.journal.group-commit-size", defaultValue = "256")
+  int journalGroupCommitSize;
+  @ConfigProperty(name = "store.legacy.journal.segments-kept", defaultValue = "4")
+  int journalSegmentsKept;
+
+  private LegacyStoreJournal journal;
+
+  @PostConstruct
+  void init() {
+    if (journalEnabled) {
+      journal = new LegacyStoreJournal(journalDirectory, journalSegmentSize, journalCommitInterval, journalGroupCommitSize,
+          journalSegmentsKept);
+    }
+  }
+
+  @PreDestroy
+  void close() {
+    if (journal != null) {
+      journal.close();
+    }
+  }
+
   public void createStoreOnLegacySystem(Store store) {
-    // just to emulate as this would send this to a legacy system, let's write a temp file with the
-    writeToFile(store);
+    send(StoreOutboxEvent.Type.CREATED, store);
   }
 
   public void updateStoreOnLegacySystem(Store store) {
-    // just to emulate as this would send this to a legacy system, let's write a temp file with the
+    send(StoreOutboxEvent.Type.UPDATED, store);
+  }
+
+  private void send(StoreOutboxEvent.Type type, Store store) {
+    if (journal != null) {
+      // Returns once the record is on disk; concurrent changes share one force() (group commit).
+      // Use LegacyStoreJournalReader to verify what was sent.
+      journal.appendAndSync(LegacyStoreJournal.Entry.of(type, store));
+      return;
+    }
     writeToFile(store);
   }
 
+  // Emulates the legacy system call with a temp file per Store change
   private void writeToFile(Store store) {
     try {
       // Step 1: Create a temporary file
@@ -1,19 +1,27 @@
 package com.fulfilment.application.monolith.stores;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.quarkus.hibernate.orm.panache.PanacheEntity;
 import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Version;
 
 @Entity
 @Cacheable
 public class Store extends PanacheEntity {
 
-  @Column(length = 40, unique = true)
+  // Keyset pagination by name never returns rows with a null name
+  @Column(length = 40, unique = true, nullable = false)
   public String name;
 
   public int quantityProductsInStock;
 
+  // Sent as ETag, not part of the JSON body
+  @Version
+  @JsonIgnore
+  public long version;
+
   public Store() {
   }
 
@@ -25,5 +33,6 @@ public class Store extends PanacheEntity {
     this.id = store.id;
     this.name = store.name;
     this.quantityProductsInStock = store.quantityProductsInStock;
+    this.version = store.version;
   }
 }
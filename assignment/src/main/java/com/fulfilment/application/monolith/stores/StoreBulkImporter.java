@@ -0,0 +1,149 @@
+package com.fulfilment.application.monolith.stores;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.narayana.jta.QuarkusTransactionException;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.PersistenceException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Creates Stores from an NDJSON stream, one Store per line.
+ * <p>
+ * The body is read line by line and valid Stores are collected into chunks.
+ * Every chunk is inserted in one transaction with JDBC batching, together with its legacy sync outbox events,
+ * so the outbox dispatcher hands the whole chunk to the legacy system in batches.
+ * A result line is streamed back for every input line as soon as it is known.
+ */
+@ApplicationScoped
+public class StoreBulkImporter {
+
+  private static final Logger LOGGER = Logger.getLogger(StoreBulkImporter.class.getName());
+  // Store.name column length
+  private static final int MAX_NAME_LENGTH = 40;
+
+  @Inject
+  private ObjectMapper objectMapper;
+  @Inject
+  private StoreOutboxRepository storeOutboxRepository;
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "store.bulk.chunk-size", defaultValue = "500")
+  int chunkSize;
+
+  private record Line(long number, Store store) {
+  }
+
+  public void importStores(InputStream input, OutputStream output) throws IOException {
+    var reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    var chunk = new ArrayList<Line>(chunkSize);
+    long lineNumber = 0;
+    String text;
+    while ((text = reader.readLine()) != null) {
+      lineNumber++;
+      if (text.isBlank()) {
+        continue;
+      }
+      Store store;
+      try {
+        store = objectMapper.readValue(text, Store.class);
+      } catch (JsonProcessingException e) {
+        writeError(output, lineNumber, 400, "Malformed Store JSON");
+        continue;
+      }
+      if (store.id != null) {
+        writeError(output, lineNumber, 422, "Id was invalidly set on request.");
+        continue;
+      }
+      if (store.name == null) {
+        writeError(output, lineNumber, 422, "Store Name was not set on request.");
+        continue;
+      }
+      if (store.name.length() > MAX_NAME_LENGTH) {
+        writeError(output, lineNumber, 422, "Store Name is longer than " + MAX_NAME_LENGTH + " characters.");
+        continue;
+      }
+      chunk.add(new Line(lineNumber, store));
+      if (chunk.size() == chunkSize) {
+        insertChunk(chunk, output);
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      insertChunk(chunk, output);
+    }
+    output.flush();
+  }
+
+  private void insertChunk(List<Line> chunk, OutputStream output) throws IOException {
+    var results = new ArrayList<ObjectNode>(chunk.size());
+    try {
+      QuarkusTransaction.requiringNew().run(() -> {
+        results.clear();
+        var names = chunk.stream().map(line -> line.store().name).toList();
+        var takenNames = new HashSet<>(Store.getEntityManager()
+            .createQuery("select name from Store where name in :names", String.class)
+            .setParameter("names", names)
+            .getResultList());
+
+        var created = new ArrayList<Store>(chunk.size());
+        for (var line : chunk) {
+          if (!takenNames.add(line.store().name)) {
+            results.add(error(line.number(), 422, "Store with name of " + line.store().name + " already exists."));
+            continue;
+          }
+          line.store().persist();
+          created.add(line.store());
+          results.add(result(line.number(), 201).put("id", line.store().id));
+        }
+        // Outbox events after all Stores, so both inserts are sent as JDBC batches
+        created.forEach(store -> storeOutboxRepository.enqueue(StoreOutboxEvent.Type.CREATED, store));
+      });
+      registry.counter("bulk_create_store_count").increment(results.stream().filter(result -> result.has("id")).count());
+    } catch (PersistenceException | QuarkusTransactionException e) {
+      // Concurrent request took one of the names, nothing from this chunk was committed
+      LOGGER.warnv(e, "Failed to insert Store chunk of {0} lines", chunk.size());
+      results.clear();
+      chunk.forEach(line -> results.add(error(line.number(), 409, "Store chunk was not committed; Try again")));
+    }
+    for (var result : results) {
+      write(output, result);
+    }
+    output.flush();
+  }
+
+  private void writeError(OutputStream output, long lineNumber, int status, String message) throws IOException {
+    write(output, error(lineNumber, status, message));
+  }
+
+  private ObjectNode error(long lineNumber, int status, String message) {
+    return result(lineNumber, status).put("error", message);
+  }
+
+  private ObjectNode result(long lineNumber, int status) {
+    return objectMapper.createObjectNode()
+        .put("line", lineNumber)
+        .put("code", status);
+  }
+
+  private void write(OutputStream output, ObjectNode result) throws IOException {
+    output.write(objectMapper.writeValueAsBytes(result));
+    output.write('\n');
+  }
+}
@@ -0,0 +1,198 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Drains {@link StoreOutboxEvent}s to the legacy system in batches.
+ * Delivery is "at least once": an event is removed only after the legacy system accepted it,
+ * failed events are retried with exponential backoff.
+ * A batch is claimed for the claim timeout and the claim is committed before the legacy system is called,
+ * so a slow legacy system doesn't hold row locks that block other dispatchers.
+ * Events of the same Store are delivered sequentially and in commit order,
+ * events of different Stores are delivered in parallel.
+ * Updates are coalesced per Store by {@link StoreOutboxRepository#enqueue}, only the latest snapshot is delivered.
+ */
+@ApplicationScoped
+public class StoreOutboxDispatcher {
+
+  private static final Logger LOGGER = Logger.getLogger(StoreOutboxDispatcher.class.getName());
+
+  @Inject
+  private StoreOutboxRepository storeOutboxRepository;
+  @Inject
+  private LegacyStoreCallGuard legacyStoreCallGuard;
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "store.outbox.batch-size", defaultValue = "100")
+  int batchSize;
+  @ConfigProperty(name = "store.outbox.parallelism", defaultValue = "4")
+  int parallelism;
+  @ConfigProperty(name = "store.outbox.retry.initial-backoff", defaultValue = "1s")
+  Duration initialBackoff;
+  @ConfigProperty(name = "store.outbox.retry.max-backoff", defaultValue = "5m")
+  Duration maxBackoff;
+  @ConfigProperty(name = "store.outbox.claim-timeout", defaultValue = "5m")
+  Duration claimTimeout;
+
+  private final AtomicReference<Instant> oldestPendingEvent = new AtomicReference<>();
+  private ExecutorService executor;
+  private DistributionSummary batchSizeSummary;
+  private Timer dispatchTimer;
+
+  @PostConstruct
+  void init() {
+    var threadNumber = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      var thread = new Thread(runnable, "store-outbox-dispatcher-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    Gauge.builder("store_outbox_lag_seconds", this, StoreOutboxDispatcher::lagSeconds)
+        .description("Age of the oldest Store change not yet delivered to the legacy system")
+        .register(registry);
+    batchSizeSummary = DistributionSummary.builder("store_outbox_batch_size")
+        .description("Number of Store changes claimed per outbox batch")
+        .register(registry);
+    dispatchTimer = Timer.builder("store_outbox_dispatch_time")
+        .description("Time taken to deliver an outbox batch to the legacy system")
+        .publishPercentiles(0.5, 0.99)
+        .register(registry);
+  }
+
+  @PreDestroy
+  void shutdown() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Scheduled(every = "${store.outbox.poll-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+  void poll() {
+    // Keep draining while batches are full, the next poll picks up the rest
+    while (dispatchBatch() == batchSize) {
+      LOGGER.debugv("Store outbox batch of {0} events dispatched; Draining next batch", batchSize);
+    }
+  }
+
+  int dispatchBatch() {
+    var now = Instant.now();
+    // Database keeps microseconds, the claim is compared for equality when the batch completes
+    var claimedUntil = now.plus(claimTimeout).truncatedTo(ChronoUnit.MILLIS);
+    List<Command> batch = QuarkusTransaction.requiringNew().call(() -> {
+      oldestPendingEvent.set(storeOutboxRepository.oldestCreatedAt());
+      return storeOutboxRepository.claimBatch(batchSize, now, claimedUntil).stream()
+          .map(Command::of)
+          .toList();
+    });
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    batchSizeSummary.record(batch.size());
+    dispatchTimer.record(() -> dispatch(batch, claimedUntil));
+    return batch.size();
+  }
+
+  private void dispatch(List<Command> batch, Instant claimedUntil) {
+    var commandsByStore = new LinkedHashMap<Long, List<Command>>();
+    for (var command : batch) {
+      commandsByStore.computeIfAbsent(command.store().id, storeId -> new ArrayList<>()).add(command);
+    }
+
+    // Called outside of any transaction, the claim keeps other dispatchers away from the events
+    var deliveries = new ArrayList<CompletableFuture<Delivery>>();
+    for (var commands : commandsByStore.values()) {
+      deliveries.add(CompletableFuture.supplyAsync(() -> deliver(commands), executor));
+    }
+
+    var delivered = new ArrayList<Long>();
+    var failed = new ArrayList<Delivery>();
+    for (var delivery : deliveries) {
+      var result = delivery.join();
+      delivered.addAll(result.deliveredIds());
+      if (result.failedId() != null) {
+        failed.add(result);
+      }
+    }
+
+    var now = Instant.now();
+    QuarkusTransaction.requiringNew().run(() -> {
+      storeOutboxRepository.deleteDelivered(delivered, claimedUntil);
+      for (var failure : failed) {
+        var command = batch.stream().filter(c -> c.eventId().equals(failure.failedId())).findFirst().orElseThrow();
+        var backoff = backoff(command.attempts() + 1);
+        storeOutboxRepository.retryLater(command.eventId(), failure.error(), now.plus(backoff), claimedUntil);
+        registry.counter("store_outbox_dispatch_errors").increment();
+        LOGGER.warnv("Failed to deliver Store change to legacy system; Retry in {0}; Event {1} for Store {2}",
+            backoff, command.type(), command.store().id);
+      }
+    });
+    long forwardedUpdates = batch.stream()
+        .filter(command -> command.type() == StoreOutboxEvent.Type.UPDATED && delivered.contains(command.eventId()))
+        .count();
+    registry.counter("store_legacy_updates_forwarded").increment(forwardedUpdates);
+  }
+
+  private Delivery deliver(List<Command> commands) {
+    var deliveredIds = new ArrayList<Long>(commands.size());
+    for (var command : commands) {
+      try {
+        switch (command.type()) {
+          case CREATED -> legacyStoreCallGuard.createStoreOnLegacySystem(command.store());
+          case UPDATED -> legacyStoreCallGuard.updateStoreOnLegacySystem(command.store());
+        }
+        deliveredIds.add(command.eventId());
+      } catch (RuntimeException e) {
+        // Later changes of the same Store must wait for this one
+        var error = String.valueOf(e.getMessage());
+        return new Delivery(deliveredIds, command.eventId(), error.substring(0, Math.min(error.length(), 255)));
+      }
+    }
+    return new Delivery(deliveredIds, null, null);
+  }
+
+  Duration backoff(int attempts) {
+    var backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+    return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+  }
+
+  private double lagSeconds() {
+    var oldest = oldestPendingEvent.get();
+    if (oldest == null) {
+      return 0;
+    }
+    return Duration.between(oldest, Instant.now()).toMillis() / 1000.0;
+  }
+
+  private record Command(Long eventId, StoreOutboxEvent.Type type, Store store, int attempts) {
+    static Command of(StoreOutboxEvent event) {
+      return new Command(event.id, event.type, event.toStore(), event.attempts);
+    }
+  }
+
+  private record Delivery(List<Long> deliveredIds, Long failedId, String error) {
+  }
+}
@@ -0,0 +1,74 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Pending change of a {@link Store} that still has to be sent to the legacy system.
+ * Rows are written in the same transaction as the Store change and removed by
+ * {@link StoreOutboxDispatcher} once the legacy system accepted them.
+ */
+@Entity
+@Table(name = "store_outbox", indexes = @Index(name = "store_outbox_next_attempt_idx", columnList = "nextAttemptAt"))
+public class StoreOutboxEvent extends PanacheEntity {
+
+  public enum Type {
+    CREATED,
+    UPDATED
+  }
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 16, nullable = false)
+  public Type type;
+
+  // Snapshot of the Store at commit time, legacy system gets exactly what was committed
+  @Column(nullable = false)
+  public Long storeId;
+
+  @Column(length = 40)
+  public String name;
+
+  public int quantityProductsInStock;
+
+  @Column(nullable = false)
+  public Instant createdAt;
+
+  @Column(nullable = false)
+  public Instant nextAttemptAt;
+
+  // Set while a dispatcher delivers the event, only that claim can remove or reschedule it
+  public Instant claimedUntil;
+
+  public int attempts;
+
+  @Column(length = 255)
+  public String lastError;
+
+  public StoreOutboxEvent() {
+  }
+
+  public static StoreOutboxEvent of(Type type, Store store) {
+    var event = new StoreOutboxEvent();
+    event.type = type;
+    event.storeId = store.id;
+    event.name = store.name;
+    event.quantityProductsInStock = store.quantityProductsInStock;
+    event.createdAt = Instant.now();
+    event.nextAttemptAt = event.createdAt;
+    return event;
+  }
+
+  public Store toStore() {
+    var store = new Store(name);
+    store.id = storeId;
+    store.quantityProductsInStock = quantityProductsInStock;
+    return store;
+  }
+}
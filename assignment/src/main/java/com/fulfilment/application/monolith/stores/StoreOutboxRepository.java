@@ -0,0 +1,118 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.LockOptions;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.query.NativeQuery;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@ApplicationScoped
+public class StoreOutboxRepository implements PanacheRepository<StoreOutboxEvent> {
+
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "store.outbox.coalesce-window", defaultValue = "1s")
+  Duration coalesceWindow;
+
+  public void enqueue(StoreOutboxEvent.Type type, Store store) {
+    var event = StoreOutboxEvent.of(type, store);
+    if (type == StoreOutboxEvent.Type.UPDATED) {
+      registry.counter("store_legacy_updates_received").increment();
+      if (coalesceUpdate(store)) {
+        registry.counter("store_legacy_updates_coalesced").increment();
+        return;
+      }
+      // Hold the update for the window, later updates of the Store are merged into it
+      event.nextAttemptAt = event.createdAt.plus(coalesceWindow);
+    }
+    persist(event);
+  }
+
+  /**
+   * Latest wins: overwrites the snapshot of a pending update of the same Store.
+   * Updates being delivered right now are claimed by the dispatcher and skipped, a new event is enqueued instead.
+   * An update whose claim expired is taken back from the dispatcher, it is delivered again with the new snapshot.
+   *
+   * @return true when the Store change was merged into a pending update
+   */
+  private boolean coalesceUpdate(Store store) {
+    if (coalesceWindow.isZero()) {
+      return false;
+    }
+    int merged = getEntityManager().createNativeQuery("""
+            update store_outbox set name = ?1, quantityProductsInStock = ?2, claimedUntil = null
+            where id in (
+              select id from store_outbox
+              where storeId = ?3 and type = 'UPDATED' and (claimedUntil is null or claimedUntil <= ?4)
+              for update skip locked)""")
+        .setParameter(1, store.name)
+        .setParameter(2, store.quantityProductsInStock)
+        .setParameter(3, store.id)
+        .setParameter(4, Instant.now())
+        .unwrap(NativeQuery.class)
+        // Without it Hibernate evicts every second-level cache region, the statement only changes the outbox
+        .addSynchronizedEntityClass(StoreOutboxEvent.class)
+        .executeUpdate();
+    return merged > 0;
+  }
+
+  /**
+   * Claims the oldest events that are due for delivery until {@code claimedUntil}, the claim is committed
+   * before the legacy system is called, so no row lock is held during delivery.
+   * Rows locked by another dispatcher are skipped, so several instances can drain the outbox in parallel.
+   * Events of a Store that has an earlier event claimed or waiting for retry are held back to keep per-store ordering.
+   * A claim that expires, e.g. when the dispatcher died, makes the event due again.
+   */
+  public List<StoreOutboxEvent> claimBatch(int batchSize, Instant now, Instant claimedUntil) {
+    List<StoreOutboxEvent> batch = find("""
+            from StoreOutboxEvent e
+            where e.nextAttemptAt <= ?1
+              and not exists (
+                select 1 from StoreOutboxEvent earlier
+                where earlier.storeId = e.storeId and earlier.id < e.id and earlier.nextAttemptAt > ?1)
+            order by e.id""", now)
+        .withLock(LockModeType.PESSIMISTIC_WRITE)
+        .withHint(AvailableSettings.JAKARTA_LOCK_TIMEOUT, LockOptions.SKIP_LOCKED)
+        .page(0, batchSize)
+        .list();
+    for (var event : batch) {
+      event.nextAttemptAt = claimedUntil;
+      event.claimedUntil = claimedUntil;
+    }
+    return batch;
+  }
+
+  /**
+   * Removes the delivered events still held by the claim, events coalesced or claimed again meanwhile are kept.
+   */
+  public long deleteDelivered(Collection<Long> ids, Instant claimedUntil) {
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    return delete("id in ?1 and claimedUntil = ?2", ids, claimedUntil);
+  }
+
+  /**
+   * Releases the claim of a failed event and schedules its next attempt.
+   */
+  public void retryLater(Long id, String error, Instant nextAttemptAt, Instant claimedUntil) {
+    update("attempts = attempts + 1, lastError = ?1, nextAttemptAt = ?2, claimedUntil = null where id = ?3 and claimedUntil = ?4",
+        error, nextAttemptAt, id, claimedUntil);
+  }
+
+  public Instant oldestCreatedAt() {
+    return getEntityManager()
+        .createQuery("select min(createdAt) from StoreOutboxEvent", Instant.class)
+        .getSingleResult();
+  }
+}
@@ -0,0 +1,65 @@
+package com.fulfilment.application.monolith.stores;
+
+import com.fulfilment.application.monolith.common.EntityCacheEviction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+
+import java.util.List;
+
+/**
+ * Blind partial Store updates: only the patched columns are written, in a single statement without loading the Store.
+ */
+@ApplicationScoped
+public class StorePatchRepository {
+
+  @Inject
+  private EntityManager entityManager;
+  @Inject
+  private StoreOutboxRepository storeOutboxRepository;
+  @Inject
+  private EntityCacheEviction entityCacheEviction;
+
+  /**
+   * Writes the non-null fields and syncs the Store to the legacy system.
+   *
+   * @param expectedVersions versions the Store must have, any version when null
+   * @return Store after the change, or null when the Store doesn't exist or has another version
+   */
+  public Store patch(Long id, String name, Integer quantityProductsInStock, List<Long> expectedVersions) {
+    var sql = new StringBuilder("update store set version = version + 1");
+    if (name != null) {
+      sql.append(", name = :name");
+    }
+    if (quantityProductsInStock != null) {
+      sql.append(", quantityProductsInStock = :quantityProductsInStock");
+    }
+    sql.append(" where id = :id");
+    if (expectedVersions != null) {
+      sql.append(" and version in (:versions)");
+    }
+    sql.append(" returning id, name, quantityProductsInStock, version");
+
+    var query = entityManager.createNativeQuery(sql.toString(), Object[].class)
+        .setParameter("id", id);
+    if (name != null) {
+      query.setParameter("name", name);
+    }
+    if (quantityProductsInStock != null) {
+      query.setParameter("quantityProductsInStock", quantityProductsInStock);
+    }
+    if (expectedVersions != null) {
+      query.setParameter("versions", expectedVersions);
+    }
+    var rows = query.getResultList();
+    // Store is cacheable and Hibernate doesn't know the statement changed it
+    entityCacheEviction.evictOnCompletion(Store.class, List.of(id));
+    if (rows.isEmpty()) {
+      return null;
+    }
+    var store = StoreStockRepository.toStore((Object[]) rows.get(0));
+    storeOutboxRepository.enqueue(StoreOutboxEvent.Type.UPDATED, store);
+    return store;
+  }
+
+}
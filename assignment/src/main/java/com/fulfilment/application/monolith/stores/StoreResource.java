@@ -1,35 +1,50 @@
 package com.fulfilment.application.monolith.stores;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fulfilment.application.monolith.common.EntityTags;
+import com.fulfilment.application.monolith.common.Idempotent;
+import com.fulfilment.application.monolith.common.JsonArrayStreamingOutput;
+import com.fulfilment.application.monolith.common.KeysetPagination;
 import io.micrometer.core.annotation.Counted;
 import io.micrometer.core.annotation.Timed;
-import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.OptimisticLockException;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PATCH;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.ext.ExceptionMapper;
 import jakarta.ws.rs.ext.Provider;
+import org.hibernate.jpa.AvailableHints;
 import org.jboss.logging.Logger;
 import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.ParameterIn;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -40,87 +55,157 @@ import java.util.concurrent.atomic.AtomicReference;
 public class StoreResource {
 
   private static final Logger LOGGER = Logger.getLogger(StoreResource.class.getName());
+  // Store.name column length
+  private static final int MAX_NAME_LENGTH = 40;
 
   @Inject
-  private LegacyStoreManagerGateway legacyStoreManagerGateway;
+  private StoreOutboxRepository storeOutboxRepository;
   @Inject
-  private MeterRegistry registry;
-  
+  private StoreBulkImporter storeBulkImporter;
+  @Inject
+  private StoreStockRepository storeStockRepository;
+  @Inject
+  private StorePatchRepository storePatchRepository;
+  @Inject
+  private StoreStockWriteBehind storeStockWriteBehind;
+  @Inject
+  private ObjectMapper objectMapper;
+
+  @GET
+  @Operation(summary = "Get all stores", description = "Returns a list of all stores sorted by name. "
+      + "With a limit returns a single page of stores with the name after the given one.")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "Successfully retrieved list",
+          content = @Content(mediaType = "application/json", schema = @Schema(implementation = Store.class))),
+      @APIResponse(responseCode = "422", description = "Invalid limit")
+  })
+  public List<Store> get(
+      @Parameter(description = "Maximum number of stores in the page") @QueryParam("limit") Integer limit,
+      @Parameter(description = "Name of the last store of the previous page") @QueryParam("after") String after) {
+    if (limit == null) {
+      return Store.listAll(Sort.by("name"));
+    }
+    var page = after == null
+        ? Store.<Store>findAll(Sort.by("name"))
+        : Store.<Store>find("name > ?1", Sort.by("name"), after);
+    return page.page(0, KeysetPagination.checkLimit(limit)).list();
+  }
+
   @GET
-  @Operation(summary = "Get all stores", description = "Returns a list of all stores sorted by name.")
+  @Path("stream")
+  @Operation(summary = "Stream all stores", description = "Returns a list of all stores sorted by name. "
+      + "Stores are written to the response while they are read from the database.")
   @APIResponses(value = {
       @APIResponse(responseCode = "200", description = "Successfully retrieved list",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Store.class)))
   })
-  public List<Store> get() {
-    return Store.listAll(Sort.by("name"));
+  public Response stream() {
+    var stores = new JsonArrayStreamingOutput<>(objectMapper, () -> Store.<Store>findAll(Sort.by("name"))
+        .withHint(AvailableHints.HINT_FETCH_SIZE, JsonArrayStreamingOutput.FETCH_SIZE)
+        .withHint(AvailableHints.HINT_READ_ONLY, true)
+        .stream()
+        // Written Stores are not needed anymore, keep the persistence context empty
+        .peek(Store.getEntityManager()::detach));
+    return Response.ok(stores).build();
   }
 
   @GET
   @Path("{id}")
-  @Operation(summary = "Get store by ID", description = "Returns a single store for the given ID.")
+  @Operation(summary = "Get store by ID", description = "Returns a single store for the given ID. "
+      + "Returns no body when the store version matches If-None-Match.")
   @APIResponses(value = {
       @APIResponse(responseCode = "200", description = "Store found",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Store.class))),
+      @APIResponse(responseCode = "304", description = "Store not modified"),
       @APIResponse(responseCode = "404", description = "Store not found")
   })
-  public Store getSingle(
-      @Parameter(description = "ID of the store to retrieve", required = true) Long id) {
+  public Response getSingle(
+      @Parameter(description = "ID of the store to retrieve", required = true) Long id,
+      @Context Request request) {
     Store entity = Store.findById(id);
     if (entity == null) {
       throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
     }
-    return entity;
+    var tag = EntityTags.of(entity.version);
+    var notModified = request.evaluatePreconditions(tag);
+    if (notModified != null) {
+      return notModified.build();
+    }
+    return Response.ok(entity).tag(tag).build();
   }
 
   @POST
   @Timed(value = "create_store_time", description = "Time taken to create store")
   @Counted(value = "create_store_count", description = "Number of stores created")
+  @Idempotent
   @Operation(summary = "Create a new store", description = "Creates a new store in the system.")
   @APIResponses(value = {
       @APIResponse(responseCode = "201", description = "Store created successfully",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Store.class))),
       @APIResponse(responseCode = "422", description = "Invalid input")
   })
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
   public Response create(
       @Parameter(description = "Store object that needs to be added", required = true) Store store) {
     if (store.id != null) {
       throw new WebApplicationException("Id was invalidly set on request.", 422);
     }
+    if (store.name == null) {
+      throw new WebApplicationException("Store Name was not set on request.", 422);
+    }
 
     var entityCopy = new AtomicReference<Store>();
     QuarkusTransaction.requiringNew().run(() -> {
       store.persist();
+      // Legacy system is synced by StoreOutboxDispatcher after commit
+      storeOutboxRepository.enqueue(StoreOutboxEvent.Type.CREATED, store);
       // Persistence entities should not be exposed to external layers.
       // This leads to "Object modified outside of transaction" kind of errors.
       entityCopy.set(new Store(store));
     });
 
-    try {
-      // TODO srcmaxim: Should I do @Timeout, @Retry, @CircuitBreaker here? Does this call idempotent?
-      legacyStoreManagerGateway.createStoreOnLegacySystem(entityCopy.get());
-    } catch (RuntimeException e) {
-      registry.counter("create_legacy_store_errors").count();
-      LOGGER.warnv(e, "Failed to create Store in legacy system; Store {0}", entityCopy.get());
-      throw e;
-    }
-    return Response.ok(entityCopy.get()).status(201).build();
+    return Response.created(URI.create("store/" + entityCopy.get().id))
+        .entity(entityCopy.get())
+        .tag(EntityTags.of(entityCopy.get().version))
+        .build();
+  }
+
+  @POST
+  @Path("bulk")
+  @Consumes("application/x-ndjson")
+  @Produces("application/x-ndjson")
+  @Timed(value = "bulk_create_store_time", description = "Time taken to create stores in bulk")
+  @Operation(summary = "Create stores in bulk", description = "Creates stores from an NDJSON stream, one store per line. "
+      + "Streams back one result line per input line with the line number, status code and either the store id or an error.")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "Stream of per line results",
+          content = @Content(mediaType = "application/x-ndjson"))
+  })
+  public Response bulkCreate(
+      @Parameter(description = "NDJSON stream of stores that need to be added", required = true) InputStream stores) {
+    StreamingOutput results = output -> storeBulkImporter.importStores(stores, output);
+    return Response.ok(results).build();
   }
 
   @PUT
   @Path("{id}")
   @Timed(value = "update_store_time", description = "Time taken to update store")
   @Counted(value = "update_store_count", description = "Number of stores updated")
+  @Idempotent
   @Operation(summary = "Update an existing store", description = "Updates an existing store in the system by ID.")
   @APIResponses(value = {
       @APIResponse(responseCode = "200", description = "Store updated successfully",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Store.class))),
       @APIResponse(responseCode = "404", description = "Store not found"),
+      @APIResponse(responseCode = "409", description = "Store was changed concurrently"),
+      @APIResponse(responseCode = "412", description = "Store version doesn't match If-Match"),
       @APIResponse(responseCode = "422", description = "Invalid input")
   })
-  public Store update(
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
+  public Response update(
       @Parameter(description = "ID of the store to update", required = true) Long id,
-      @Parameter(description = "Updated store object", required = true) Store updatedStore) {
+      @Parameter(description = "Updated store object", required = true) Store updatedStore,
+      @Context Request request) {
     if (updatedStore.name == null) {
       throw new WebApplicationException("Store Name was not set on request.", 422);
     }
@@ -132,83 +217,175 @@ public class StoreResource {
       if (entity == null) {
         throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
       }
+      checkPreconditions(request, entity);
 
       entity.name = updatedStore.name;
       entity.quantityProductsInStock = updatedStore.quantityProductsInStock;
+      // Version is checked and incremented by the flush
+      Store.flush();
+      storeOutboxRepository.enqueue(StoreOutboxEvent.Type.UPDATED, entity);
       // Persistence entities should not be exposed to external layers.
       // This leads to "Object modified outside of transaction" kind of errors.
       entityCopy.set(new Store(entity));
     });
 
-    try {
-      // TODO srcmaxim: Should I do @Timeout, @Retry, @CircuitBreaker here? Does this call idempotent?
-      legacyStoreManagerGateway.updateStoreOnLegacySystem(entityCopy.get());
-    } catch (RuntimeException e) {
-      registry.counter("update_legacy_store_errors").count();
-      LOGGER.warnv(e, "Failed to update Store in legacy system; Store {0}", entityCopy.get());
-      throw e;
-    }
-    return entityCopy.get();
+    return Response.ok(entityCopy.get()).tag(EntityTags.of(entityCopy.get().version)).build();
   }
 
   @PATCH
   @Path("{id}")
+  @Consumes({"application/merge-patch+json", "application/json"})
   @Timed(value = "patch_store_time", description = "Time taken to patch store")
   @Counted(value = "patch_store_count", description = "Number of store patches")
-  @Operation(summary = "Patch an existing store", description = "Partially updates an existing store in the system by ID.")
+  @Idempotent
+  @Operation(summary = "Patch an existing store", description = "Partially updates an existing store in the system by ID. "
+      + "Follows JSON Merge Patch: only the fields present in the request are changed.")
   @APIResponses(value = {
       @APIResponse(responseCode = "200", description = "Store patched successfully",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Store.class))),
       @APIResponse(responseCode = "404", description = "Store not found"),
+      @APIResponse(responseCode = "412", description = "Store version doesn't match If-Match"),
       @APIResponse(responseCode = "422", description = "Invalid input")
   })
-  public Store patch(
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
+  public Response patch(
       @Parameter(description = "ID of the store to patch", required = true) Long id,
-      @Parameter(description = "Store object with the fields to patch", required = true) Store updatedStore) {
-    if (updatedStore.name == null) {
-      throw new WebApplicationException("Store Name was not set on request.", 422);
+      @Parameter(description = "Store fields to patch", required = true) JsonNode patch,
+      @Parameter(description = "ETags of the store versions the patch is based on") @HeaderParam("If-Match") String ifMatch,
+      @Context Request request) {
+    if (patch == null || !patch.isObject()) {
+      throw new WebApplicationException("Store patch must be a JSON object.", 422);
+    }
+    String name = null;
+    Integer quantityProductsInStock = null;
+    for (var fields = patch.fields(); fields.hasNext(); ) {
+      var field = fields.next();
+      var value = field.getValue();
+      switch (field.getKey()) {
+        case "name" -> {
+          if (!value.isTextual()) {
+            throw new WebApplicationException("Store Name must be a string.", 422);
+          }
+          name = value.textValue();
+          if (name.length() > MAX_NAME_LENGTH) {
+            throw new WebApplicationException("Store Name is longer than " + MAX_NAME_LENGTH + " characters.", 422);
+          }
+        }
+        case "quantityProductsInStock" -> {
+          if (!value.isIntegralNumber() || !value.canConvertToInt()) {
+            throw new WebApplicationException("Store quantityProductsInStock must be an integer.", 422);
+          }
+          quantityProductsInStock = value.intValue();
+        }
+        case "id" -> throw new WebApplicationException("Id was invalidly set on request.", 422);
+        default -> throw new WebApplicationException("Store doesn't have field " + field.getKey() + ".", 422);
+      }
+    }
+    if (name == null && quantityProductsInStock == null) {
+      // Nothing to change
+      return getSingle(id, request);
     }
 
-    var entityCopy = new AtomicReference<Store>();
-    QuarkusTransaction.requiringNew().run(() -> {
-      Store entity = Store.findById(id);
-
-      if (entity == null) {
-        throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
+    var expectedVersions = parseIfMatch(ifMatch);
+    var patchedName = name;
+    var patchedQuantity = quantityProductsInStock;
+    var store = QuarkusTransaction.requiringNew().call(() -> {
+      var patched = storePatchRepository.patch(id, patchedName, patchedQuantity, expectedVersions);
+      if (patched == null) {
+        if (Store.count("id", id) == 0) {
+          throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
+        }
+        throw new WebApplicationException("Store with id of " + id + " was changed; Version doesn't match If-Match.", 412);
       }
+      return patched;
+    });
+    return Response.ok(store).tag(EntityTags.of(store.version)).build();
+  }
 
-      if (entity.name != null) {
-        entity.name = updatedStore.name;
+  /**
+   * Versions from a strong If-Match list. Weak tags never match, "*" and no header match any version.
+   */
+  private static List<Long> parseIfMatch(String ifMatch) {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    var versions = new ArrayList<Long>();
+    for (var tag : ifMatch.split(",")) {
+      var value = tag.trim();
+      if (value.length() > 2 && value.startsWith("\"") && value.endsWith("\"")) {
+        try {
+          versions.add(Long.parseLong(value.substring(1, value.length() - 1)));
+        } catch (NumberFormatException e) {
+          // Not a tag of ours, can't match
+        }
       }
+    }
+    // No version can match, the update finds no row and fails with 412
+    return versions.isEmpty() ? List.of(-1L) : versions;
+  }
 
-      if (entity.quantityProductsInStock != 0) {
-        entity.quantityProductsInStock = updatedStore.quantityProductsInStock;
+  @POST
+  @Path("{id}/stock-delta")
+  @Timed(value = "stock_delta_store_time", description = "Time taken to apply store stock delta")
+  @Counted(value = "stock_delta_store_count", description = "Number of store stock deltas")
+  @Idempotent
+  @Operation(summary = "Change store stock", description = "Adds a signed delta to the stock of a store by ID. "
+      + "The stock is changed atomically and can't go below zero. "
+      + "In write-behind mode the delta is accepted and applied to the database with the next flush, "
+      + "unless it is larger than the max pending delta.")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "Store stock changed successfully",
+          content = @Content(mediaType = "application/json", schema = @Schema(implementation = Store.class))),
+      @APIResponse(responseCode = "202", description = "Store stock delta accepted for write-behind"),
+      @APIResponse(responseCode = "404", description = "Store not found"),
+      @APIResponse(responseCode = "409", description = "Not enough stock"),
+      @APIResponse(responseCode = "422", description = "Invalid input"),
+      @APIResponse(responseCode = "503", description = "Too many pending deltas in write-behind mode, retry later")
+  })
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
+  public Response changeStock(
+      @Parameter(description = "ID of the store to change", required = true) Long id,
+      @Parameter(description = "Signed stock delta", required = true) StockDelta stockDelta) {
+    if (stockDelta == null || stockDelta.delta() == null) {
+      throw new WebApplicationException("Stock delta was not set on request.", 422);
+    }
+
+    if (storeStockWriteBehind.isEnabled() && storeStockWriteBehind.add(id, stockDelta.delta())) {
+      return Response.accepted().build();
+    }
+
+    var store = QuarkusTransaction.requiringNew().call(() -> {
+      var entity = storeStockRepository.applyDelta(id, stockDelta.delta());
+      if (entity == null) {
+        if (Store.findById(id) == null) {
+          throw new WebApplicationException("Store with id of " + id + " does not exist.", 404);
+        }
+        throw new WebApplicationException("Store with id of " + id + " doesn't have enough stock for delta " + stockDelta.delta() + ".", 409);
       }
-      entity.persist();
-      // Persistence entities should not be exposed to external layers.
-      // This leads to "Object modified outside of transaction" kind of errors.
-      entityCopy.set(new Store(entity));
+      return entity;
     });
+    return Response.ok(store).tag(EntityTags.of(store.version)).build();
+  }
+
+  public record StockDelta(Integer delta) {
+  }
 
-    try {
-      // TODO srcmaxim: Should I do @Timeout, @Retry, @CircuitBreaker here? Does this call idempotent?
-      legacyStoreManagerGateway.updateStoreOnLegacySystem(entityCopy.get());
-    } catch (RuntimeException e) {
-      registry.counter("patch_legacy_store_errors").count();
-      LOGGER.warnv(e, "Failed to patch Store in legacy system; Store {0}", entityCopy.get());
-      throw e;
+  private static void checkPreconditions(Request request, Store entity) {
+    if (request.evaluatePreconditions(EntityTags.of(entity.version)) != null) {
+      throw new WebApplicationException("Store with id of " + entity.id + " was changed; Version doesn't match If-Match.", 412);
     }
-    return new Store(entityCopy.get());
   }
 
   @DELETE
   @Path("{id}")
   @Transactional
+  @Idempotent
   @Operation(summary = "Delete a store", description = "Deletes a store from the system by ID.")
   @APIResponses(value = {
       @APIResponse(responseCode = "204", description = "Store deleted successfully"),
       @APIResponse(responseCode = "404", description = "Store not found")
   })
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
   public Response delete(
       @Parameter(description = "ID of the store to delete", required = true) Long id) {
     Store entity = Store.findById(id);
@@ -232,6 +409,8 @@ public class StoreResource {
       int code = 500;
       if (exception instanceof WebApplicationException) {
         code = ((WebApplicationException) exception).getResponse().getStatus();
+      } else if (exception instanceof OptimisticLockException) {
+        code = 409;
       }
 
       ObjectNode exceptionJson = objectMapper.createObjectNode();
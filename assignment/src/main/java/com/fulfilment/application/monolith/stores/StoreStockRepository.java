@@ -0,0 +1,96 @@
+package com.fulfilment.application.monolith.stores;
+
+import com.fulfilment.application.monolith.common.EntityCacheEviction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes Store stock in place, without loading the Store entity.
+ */
+@ApplicationScoped
+public class StoreStockRepository {
+
+  @Inject
+  private EntityManager entityManager;
+  @Inject
+  private StoreOutboxRepository storeOutboxRepository;
+  @Inject
+  private EntityCacheEviction entityCacheEviction;
+
+  /**
+   * @return stock of the Store, read through the second-level cache, or null when the Store doesn't exist
+   */
+  public Integer findStock(Long id) {
+    var store = entityManager.find(Store.class, id);
+    return store == null ? null : store.quantityProductsInStock;
+  }
+
+  /**
+   * Adds a signed delta to the Store stock in a single conditional statement and syncs the Store to the legacy system.
+   * Concurrent deltas of the same Store queue on the row lock only, none of them is lost.
+   *
+   * @return Store after the change, or null when the Store doesn't exist or its stock would go below zero
+   */
+  public Store applyDelta(Long id, int delta) {
+    var rows = entityManager.createNativeQuery("""
+            update store set quantityProductsInStock = quantityProductsInStock + ?1, version = version + 1
+            where id = ?2 and quantityProductsInStock + ?1 >= 0
+            returning id, name, quantityProductsInStock, version""", Object[].class)
+        .setParameter(1, delta)
+        .setParameter(2, id)
+        .getResultList();
+    // Store is cacheable and Hibernate doesn't know the statement changed it
+    entityCacheEviction.evictOnCompletion(Store.class, List.of(id));
+    if (rows.isEmpty()) {
+      return null;
+    }
+    var store = toStore((Object[]) rows.get(0));
+    storeOutboxRepository.enqueue(StoreOutboxEvent.Type.UPDATED, store);
+    return store;
+  }
+
+  /**
+   * Adds the deltas of many Stores in a single statement and syncs the changed Stores to the legacy system.
+   * A delta that would take the Store stock below zero is not applied.
+   *
+   * @return Stores changed by the deltas
+   */
+  @Transactional(Transactional.TxType.REQUIRES_NEW)
+  public List<Store> applyDeltas(Map<Long, Long> deltas) {
+    var ids = deltas.keySet().toArray(Long[]::new);
+    var values = new Long[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      values[i] = deltas.get(ids[i]);
+    }
+    List<?> rows = entityManager.createNativeQuery("""
+            update store s set quantityProductsInStock = s.quantityProductsInStock + d.delta, version = s.version + 1
+            from unnest(cast(?1 as bigint[]), cast(?2 as bigint[])) as d(id, delta)
+            where s.id = d.id and s.quantityProductsInStock + d.delta >= 0
+            returning s.id, s.name, s.quantityProductsInStock, s.version""", Object[].class)
+        .setParameter(1, ids)
+        .setParameter(2, values)
+        .getResultList();
+    entityCacheEviction.evictOnCompletion(Store.class, deltas.keySet());
+    var stores = new ArrayList<Store>(rows.size());
+    for (var row : rows) {
+      var store = toStore((Object[]) row);
+      storeOutboxRepository.enqueue(StoreOutboxEvent.Type.UPDATED, store);
+      stores.add(store);
+    }
+    return stores;
+  }
+
+  static Store toStore(Object[] row) {
+    var store = new Store((String) row[1]);
+    store.id = ((Number) row[0]).longValue();
+    store.quantityProductsInStock = ((Number) row[2]).intValue();
+    store.version = ((Number) row[3]).longValue();
+    return store;
+  }
+}
@@ -0,0 +1,240 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind Store stock: deltas are summed in memory and flushed to the database in one statement per interval.
+ * <p>
+ * A delta is accepted only when the projected stock of the Store stays at or above zero, so an accepted delta isn't
+ * dropped by the flush later. The projected stock is kept in memory: it is read from the database when the Store
+ * takes its first delta, follows every accepted delta and is reset to the stock returned by each flush.
+ * A Store with nothing pending and nothing in flight is dropped at the next flush and read again on its next delta.
+ * A flush takes the pending delta of each Store atomically and runs the statement without blocking accepts.
+ * Stock set by other writes in the meantime can still make the flush reject a delta sum, it is counted and logged
+ * with the Store id.
+ * <p>
+ * The pending delta of a Store is bounded: past half of the max pending delta a flush is requested in the background,
+ * a delta that would take it over the max is rejected with 503 until the flush caught up.
+ * A delta larger than the max on its own is not taken, the caller applies it to the database directly.
+ * Deltas not flushed yet are lost on crash: the flush interval and the max pending delta per Store bound the loss,
+ * pending deltas are flushed on shutdown.
+ */
+@ApplicationScoped
+public class StoreStockWriteBehind {
+
+  private static final Logger LOGGER = Logger.getLogger(StoreStockWriteBehind.class.getName());
+
+  @Inject
+  StoreStockRepository storeStockRepository;
+  @Inject
+  MeterRegistry registry;
+
+  @ConfigProperty(name = "store.stock.write-behind.enabled", defaultValue = "false")
+  boolean enabled;
+  @ConfigProperty(name = "store.stock.write-behind.max-pending-delta", defaultValue = "1000")
+  long maxPendingDelta;
+
+  // Stores that took deltas since the previous flush or have deltas in flight
+  private final ConcurrentHashMap<Long, StoreStock> stocks = new ConcurrentHashMap<>();
+  // Flushes run one at a time: a flush result is applied to the projected stock while no other delta is in flight
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private ExecutorService flushExecutorService;
+  Executor flushExecutor;
+  private Timer flushTimer;
+
+  @PostConstruct
+  void init() {
+    flushExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+      var thread = new Thread(runnable, "store-stock-flush");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flushExecutor = flushExecutorService;
+    Gauge.builder("store_stock_pending_delta", this, StoreStockWriteBehind::pendingDelta)
+        .description("Absolute sum of Store stock deltas not flushed to the database yet")
+        .register(registry);
+    Gauge.builder("store_stock_pending_stores", this, StoreStockWriteBehind::pendingStores)
+        .description("Stores with stock deltas not flushed to the database yet")
+        .register(registry);
+    flushTimer = Timer.builder("store_stock_flush_time")
+        .description("Time taken to flush Store stock deltas to the database")
+        .publishPercentiles(0.5, 0.99)
+        .register(registry);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    flushExecutorService.shutdownNow();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return false when the delta is larger than the max pending delta, it has to be applied to the database directly
+   * @throws WebApplicationException 404 when the Store doesn't exist, 409 when the projected stock would go
+   *                                 below zero, 503 when the pending delta of the Store is at the max
+   */
+  public boolean add(Long storeId, int delta) {
+    if (Math.abs((long) delta) > maxPendingDelta) {
+      return false;
+    }
+    var full = new AtomicBoolean();
+    StoreStock stock;
+    do {
+      if (!stocks.containsKey(storeId)) {
+        seed(storeId);
+      }
+      full.set(false);
+      stock = stocks.computeIfPresent(storeId, (id, current) -> {
+        if (current.projected() + delta < 0) {
+          throw new WebApplicationException("Store with id of " + storeId + " doesn't have enough stock for delta "
+              + delta + ".", 409);
+        }
+        if (Math.abs(current.pending() + delta) > maxPendingDelta) {
+          full.set(true);
+          return current;
+        }
+        return new StoreStock(current.projected() + delta, current.pending() + delta);
+      });
+      // Dropped by a flush since it was seeded
+    } while (stock == null);
+    if (full.get()) {
+      registry.counter("store_stock_deltas_throttled").increment();
+      requestFlush();
+      throw new WebApplicationException(Response.status(503)
+          .header("Retry-After", 1)
+          .entity("Store with id of " + storeId + " has too many pending stock deltas; Retry later.")
+          .build());
+    }
+    long pendingAfter = stock.pending();
+    if (Math.abs(pendingAfter) * 2 >= maxPendingDelta) {
+      requestFlush();
+    }
+    return true;
+  }
+
+  private void seed(Long storeId) {
+    var stock = storeStockRepository.findStock(storeId);
+    if (stock == null) {
+      throw new WebApplicationException("Store with id of " + storeId + " does not exist.", 404);
+    }
+    stocks.putIfAbsent(storeId, new StoreStock(stock, 0));
+  }
+
+  @Scheduled(every = "${store.stock.write-behind.flush-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+  void scheduledFlush() {
+    if (enabled) {
+      flush();
+    }
+  }
+
+  void onShutdown(@Observes ShutdownEvent event) {
+    if (enabled) {
+      flush();
+    }
+  }
+
+  // At most one background flush is queued, requests meanwhile join it
+  private void requestFlush() {
+    if (flushRequested.compareAndSet(false, true)) {
+      flushExecutor.execute(() -> {
+        flushRequested.set(false);
+        flush();
+      });
+    }
+  }
+
+  void flush() {
+    flushLock.lock();
+    try {
+      var deltas = takePendingDeltas();
+      if (deltas.isEmpty()) {
+        return;
+      }
+      List<Store> stores;
+      try {
+        stores = flushTimer.record(() -> storeStockRepository.applyDeltas(deltas));
+      } catch (RuntimeException e) {
+        // Deltas stay pending and are retried by the next flush, the projected stock already includes them
+        deltas.forEach((storeId, delta) -> stocks.computeIfPresent(storeId,
+            (id, current) -> new StoreStock(current.projected(), current.pending() + delta)));
+        LOGGER.error("Failed to flush Store stock deltas", e);
+        return;
+      }
+      var rejected = new HashMap<Long, Long>(deltas);
+      for (var store : stores) {
+        rejected.remove(store.id);
+        // Database stock now includes the flushed delta, deltas accepted since are still pending
+        stocks.computeIfPresent(store.id,
+            (id, current) -> new StoreStock(store.quantityProductsInStock + current.pending(), current.pending()));
+      }
+      if (!rejected.isEmpty()) {
+        rejected.forEach((storeId, delta) -> stocks.computeIfPresent(storeId,
+            (id, current) -> new StoreStock(current.projected() - delta, current.pending())));
+        registry.counter("store_stock_deltas_rejected").increment(rejected.size());
+        rejected.forEach((storeId, delta) -> LOGGER.warnv(
+            "Dropped stock delta {0} of Store {1}; Stock would go below zero or Store doesn't exist", delta, storeId));
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Resets the pending delta of every Store and drops the Stores that had nothing pending.
+   */
+  private Map<Long, Long> takePendingDeltas() {
+    var deltas = new HashMap<Long, Long>();
+    for (var storeId : stocks.keySet()) {
+      stocks.computeIfPresent(storeId, (id, current) -> {
+        if (current.pending() == 0) {
+          return null;
+        }
+        deltas.put(id, current.pending());
+        return new StoreStock(current.projected(), 0);
+      });
+    }
+    return deltas;
+  }
+
+  private double pendingDelta() {
+    return stocks.values().stream().mapToLong(stock -> Math.abs(stock.pending())).sum();
+  }
+
+  private double pendingStores() {
+    return stocks.values().stream().filter(stock -> stock.pending() != 0).count();
+  }
+
+  /**
+   * @param projected database stock plus the deltas pending and in flight
+   * @param pending   sum of the deltas accepted since the last flush started
+   */
+  private record StoreStock(long projected, long pending) {
+  }
+}
@@ -0,0 +1,41 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationAdmissionStrategy;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+
+/**
+ * Serializes creations per Location with a PostgreSQL transaction-level advisory lock.
+ * The lock is keyed by the Location identifier, doesn't touch the Location row and is released on commit or rollback.
+ * Concurrent creations at the same Location wait instead of failing.
+ */
+@ApplicationScoped
+public class AdvisoryLockLocationAdmission implements LocationAdmissionStrategy {
+
+  public static final String NAME = "advisory-lock";
+  // Advisory lock key space of warehouse admissions, the second key is the Location identifier hash
+  private static final int LOCK_CLASS_ID = 1_001;
+
+  @Inject
+  private EntityManager entityManager;
+  @Inject
+  private WarehouseStore warehouseStore;
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public void admit(Location location, Runnable create) {
+    entityManager.createNativeQuery("select 1 from pg_advisory_xact_lock(?1, hashtext(?2))")
+        .setParameter(1, LOCK_CLASS_ID)
+        .setParameter(2, location.identification())
+        .getSingleResult();
+    LocationAdmissionStrategy.checkNumberOfWarehouses(warehouseStore.findAggregate(location.identification()).warehouses(), location);
+    create.run();
+  }
+}
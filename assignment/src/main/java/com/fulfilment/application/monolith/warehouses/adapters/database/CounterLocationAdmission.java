@@ -0,0 +1,83 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationAdmissionStrategy;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.query.NativeQuery;
+
+/**
+ * Optimistic admission: every creation at a Location increments the Location version in {@code location_warehouse_count}.
+ * <p>
+ * The version is read before counting warehouses and is compared when it's incremented.
+ * When a concurrent creation incremented it first, the count may be stale: the admission is retried with fresh values.
+ * Locations are never locked while warehouses are counted, the version row is locked from the increment until commit.
+ */
+@ApplicationScoped
+public class CounterLocationAdmission implements LocationAdmissionStrategy {
+
+  public static final String NAME = "counter";
+
+  @Inject
+  private EntityManager entityManager;
+  @Inject
+  private WarehouseStore warehouseStore;
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "warehouse.location-admission.max-retries", defaultValue = "5")
+  int maxRetries;
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public void admit(Location location, Runnable create) {
+    for (int attempt = 0; attempt <= maxRetries; attempt++) {
+      long version = readVersion(location.identification());
+      long warehousesInTheSameLocation = warehouseStore.findAggregate(location.identification()).warehouses();
+      LocationAdmissionStrategy.checkNumberOfWarehouses(warehousesInTheSameLocation, location);
+      int updated = entityManager.createQuery("""
+              update DbLocationWarehouseCount set warehouseCount = ?1, version = version + 1
+              where location = ?2 and version = ?3""")
+          .setParameter(1, warehousesInTheSameLocation + 1)
+          .setParameter(2, location.identification())
+          .setParameter(3, version)
+          .executeUpdate();
+      if (updated == 1) {
+        create.run();
+        return;
+      }
+      registry.counter("location_admission_retries", "strategy", NAME).increment();
+    }
+    registry.counter("location_admission_conflicts", "strategy", NAME).increment();
+    throw new WebApplicationException("Can not create Warehouse; Resource conflict; Try again", 409);
+  }
+
+  private long readVersion(String location) {
+    var versions = entityManager.createQuery(
+            "select c.version from DbLocationWarehouseCount c where c.location = ?1", Long.class)
+        .setParameter(1, location)
+        .getResultList();
+    if (!versions.isEmpty()) {
+      return versions.get(0);
+    }
+    // First creation at the Location, concurrent creations insert the same row
+    entityManager.createNativeQuery("""
+            insert into location_warehouse_count(location, warehouseCount, version)
+            values (?1, 0, 0)
+            on conflict do nothing""")
+        .setParameter(1, location)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(DbLocationWarehouseCount.class)
+        .executeUpdate();
+    return readVersion(location);
+  }
+}
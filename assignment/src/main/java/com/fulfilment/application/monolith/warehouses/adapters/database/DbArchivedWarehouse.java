@@ -0,0 +1,41 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.ArchivedWarehouse;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Archived Warehouse, moved out of the warehouse table so active Warehouse queries and indexes hold active rows only.
+ * Keeps the id it had as an active Warehouse.
+ */
+@Entity
+@Table(name = "warehouse_archive", indexes = {@Index(columnList = "businessUnitCode"), @Index(columnList = "location"),
+    @Index(columnList = "archivedAt, id")})
+public class DbArchivedWarehouse {
+
+  @Id
+  public Long id;
+
+  public String businessUnitCode;
+
+  public String location;
+
+  public Integer capacity;
+
+  public Integer stock;
+
+  public LocalDateTime createdAt;
+
+  public LocalDateTime archivedAt;
+
+  public DbArchivedWarehouse() {
+  }
+
+  public ArchivedWarehouse toArchivedWarehouse() {
+    return new ArchivedWarehouse(id, businessUnitCode, location, capacity, stock, createdAt, archivedAt);
+  }
+}
@@ -0,0 +1,33 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.LocationAggregate;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Totals of the active warehouses at a Location, changed in the same statement as the warehouses,
+ * see {@link WarehouseRepository}. Drift is repaired by {@link LocationAggregateReconciler}.
+ */
+@Entity
+@Table(name = "location_aggregate")
+public class DbLocationAggregate {
+
+  @Id
+  @Column(length = 16)
+  public String location;
+
+  public long warehouses;
+
+  public long capacity;
+
+  public long stock;
+
+  public DbLocationAggregate() {
+  }
+
+  public LocationAggregate toLocationAggregate() {
+    return new LocationAggregate(location, warehouses, capacity, stock);
+  }
+}
@@ -0,0 +1,27 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Version of the set of warehouses at a Location, see {@link CounterLocationAdmission}.
+ */
+@Entity
+@Table(name = "location_warehouse_count")
+public class DbLocationWarehouseCount {
+
+  @Id
+  @Column(length = 16)
+  public String location;
+
+  // Active warehouses at the Location when it was changed the last time
+  public long warehouseCount;
+
+  // Incremented by every admitted creation
+  public long version;
+
+  public DbLocationWarehouseCount() {
+  }
+}
@@ -1,17 +1,22 @@
 package com.fulfilment.application.monolith.warehouses.adapters.database;
 
 import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
-import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "warehouse")
-@Cacheable
+// Table holds active Warehouses only, archived ones are moved to DbArchivedWarehouse
+@Table(name = "warehouse",
+    uniqueConstraints = @UniqueConstraint(columnNames = "businessUnitCode"),
+    indexes = @Index(columnList = "location, capacity"))
+// Not in the second-level cache: another instance writing a Warehouse can't invalidate this instance's regions.
+// Reads by business unit code go through WarehouseCache, which expires entries after write.
 public class DbWarehouse {
 
   @Id
@@ -28,8 +33,6 @@ public class DbWarehouse {
 
   public LocalDateTime createdAt;
 
-  public LocalDateTime archivedAt;
-
   public DbWarehouse() {
   }
 
@@ -40,7 +43,6 @@ public class DbWarehouse {
     warehouse.capacity = this.capacity;
     warehouse.stock = this.stock;
     warehouse.createdAt = this.createdAt;
-    warehouse.archivedAt = this.archivedAt;
     return warehouse;
   }
 }
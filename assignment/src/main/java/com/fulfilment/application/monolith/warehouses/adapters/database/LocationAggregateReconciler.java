@@ -0,0 +1,99 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.hibernate.query.NativeQuery;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+
+/**
+ * Recomputes Location aggregates from the active warehouses and repairs the ones that drifted,
+ * e.g. after warehouses were written around {@link WarehouseRepository}.
+ * <p>
+ * Every Location is checked in its own short transaction. The aggregate row is locked before the warehouses
+ * are read: writers change it before they commit, so the recomputed totals can't miss a committed write
+ * and can't race with one in progress.
+ */
+@ApplicationScoped
+public class LocationAggregateReconciler {
+
+  private static final Logger LOGGER = Logger.getLogger(LocationAggregateReconciler.class.getName());
+
+  @Inject
+  private EntityManager entityManager;
+  @Inject
+  private MeterRegistry registry;
+
+  @Scheduled(every = "${warehouse.location-aggregate.reconcile-interval:1h}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+  void scheduledReconcile() {
+    reconcile();
+  }
+
+  /**
+   * @return number of repaired Location aggregates
+   */
+  public int reconcile() {
+    @SuppressWarnings("unchecked")
+    List<String> locations = QuarkusTransaction.requiringNew().call(() -> entityManager.createNativeQuery(
+            "select location from location_aggregate union select location from warehouse", String.class)
+        .getResultList());
+    int repaired = 0;
+    for (var location : locations) {
+      if (QuarkusTransaction.requiringNew().call(() -> reconcile(location))) {
+        repaired++;
+      }
+    }
+    return repaired;
+  }
+
+  private boolean reconcile(String location) {
+    // Missing aggregate is inserted empty, an existing one isn't written
+    entityManager.createNativeQuery("""
+            insert into location_aggregate (location, warehouses, capacity, stock) values (?1, 0, 0, 0)
+            on conflict (location) do nothing""")
+        .setParameter(1, location)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(DbLocationAggregate.class)
+        .executeUpdate();
+    // The latest committed aggregate, locked until the end of the transaction
+    var aggregate = (Object[]) entityManager.createNativeQuery("""
+            select warehouses, capacity, stock from location_aggregate where location = ?1 for update""", Object[].class)
+        .setParameter(1, location)
+        .getSingleResult();
+    var actual = (Object[]) entityManager.createNativeQuery("""
+            select count(*), coalesce(sum(capacity), 0), coalesce(sum(stock), 0) from warehouse where location = ?1""",
+            Object[].class)
+        .setParameter(1, location)
+        .getSingleResult();
+    if (sameTotals(aggregate, actual)) {
+      return false;
+    }
+    LOGGER.warnv("Repairing Location aggregate {0}: [warehouses={1}, capacity={2}, stock={3}] => [warehouses={4}, capacity={5}, stock={6}]",
+        location, aggregate[0], aggregate[1], aggregate[2], actual[0], actual[1], actual[2]);
+    entityManager.createNativeQuery("""
+            update location_aggregate set warehouses = ?2, capacity = ?3, stock = ?4 where location = ?1""")
+        .setParameter(1, location)
+        .setParameter(2, ((Number) actual[0]).longValue())
+        .setParameter(3, ((Number) actual[1]).longValue())
+        .setParameter(4, ((Number) actual[2]).longValue())
+        .unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(DbLocationAggregate.class)
+        .executeUpdate();
+    registry.counter("location_aggregate_repairs").increment();
+    return true;
+  }
+
+  private static boolean sameTotals(Object[] aggregate, Object[] actual) {
+    for (int i = 0; i < aggregate.length; i++) {
+      if (((Number) aggregate[i]).longValue() != ((Number) actual[i]).longValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
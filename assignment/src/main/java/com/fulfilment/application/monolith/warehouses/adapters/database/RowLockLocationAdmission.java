@@ -0,0 +1,49 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationAdmissionStrategy;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.PessimisticLockException;
+import jakarta.ws.rs.WebApplicationException;
+
+/**
+ * Locks the Location row with {@code FOR UPDATE SKIP LOCKED} and counts warehouses again under the lock.
+ * Creations at a busy Location fail fast with 409 instead of waiting for the lock.
+ */
+@ApplicationScoped
+public class RowLockLocationAdmission implements LocationAdmissionStrategy {
+
+  public static final String NAME = "row-lock";
+
+  @Inject
+  private LocationResolverOperation locationResolverOperation;
+  @Inject
+  private WarehouseStore warehouseStore;
+  @Inject
+  private MeterRegistry registry;
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public void admit(Location location, Runnable create) {
+    try {
+      var lockedLocation = locationResolverOperation.lockByIdentifier(location.identification());
+      if (lockedLocation == null) {
+        // Row is locked by a concurrent creation
+        throw new PessimisticLockException();
+      }
+      LocationAdmissionStrategy.checkNumberOfWarehouses(warehouseStore.findAggregate(location.identification()).warehouses(), lockedLocation);
+    } catch (PessimisticLockException e) {
+      registry.counter("location_admission_conflicts", "strategy", NAME).increment();
+      throw new WebApplicationException("Can not create Warehouse; Resource conflict; Try again", 409);
+    }
+    create.run();
+  }
+}
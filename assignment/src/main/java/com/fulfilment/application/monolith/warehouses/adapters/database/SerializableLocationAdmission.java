@@ -0,0 +1,101 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationAdmissionStrategy;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts and inserts in a SERIALIZABLE transaction, PostgreSQL aborts one of two creations that saw the same count.
+ * The aborted creation is retried in a new transaction with a jittered backoff.
+ * <p>
+ * Isolation level can't be changed in the middle of a transaction, so the admission runs in its own transaction,
+ * suspending the caller's one.
+ */
+@ApplicationScoped
+public class SerializableLocationAdmission implements LocationAdmissionStrategy {
+
+  public static final String NAME = "serializable";
+  // serialization_failure and deadlock_detected
+  private static final String SERIALIZATION_FAILURE = "40001";
+  private static final String DEADLOCK_DETECTED = "40P01";
+
+  @Inject
+  private EntityManager entityManager;
+  @Inject
+  private WarehouseStore warehouseStore;
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "warehouse.location-admission.max-retries", defaultValue = "5")
+  int maxRetries;
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public void admit(Location location, Runnable create) {
+    for (int attempt = 0; attempt <= maxRetries; attempt++) {
+      try {
+        QuarkusTransaction.requiringNew().run(() -> {
+          entityManager.unwrap(Session.class).doWork(connection -> {
+            try (var statement = connection.createStatement()) {
+              statement.execute("set transaction isolation level serializable");
+            }
+          });
+          LocationAdmissionStrategy.checkNumberOfWarehouses(warehouseStore.findAggregate(location.identification()).warehouses(), location);
+          create.run();
+          entityManager.flush();
+        });
+        return;
+      } catch (RuntimeException e) {
+        if (!isSerializationFailure(e)) {
+          throw e;
+        }
+        registry.counter("location_admission_retries", "strategy", NAME).increment();
+        backoff(attempt);
+      }
+    }
+    registry.counter("location_admission_conflicts", "strategy", NAME).increment();
+    throw new WebApplicationException("Can not create Warehouse; Resource conflict; Try again", 409);
+  }
+
+  private static boolean isSerializationFailure(Throwable e) {
+    for (var cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException sqlException
+          && (SERIALIZATION_FAILURE.equals(sqlException.getSQLState()) || DEADLOCK_DETECTED.equals(sqlException.getSQLState()))) {
+        return true;
+      }
+      // Failure at commit is reported by the transaction manager as a suppressed XAException
+      for (var suppressed : cause.getSuppressed()) {
+        if (isSerializationFailure(suppressed)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // Exponential backoff with full jitter: a failure at commit costs a new connection, the pool discards the old one
+  private static void backoff(int attempt) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(1, (5L << attempt) + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WebApplicationException("Interrupted while creating Warehouse", 503);
+    }
+  }
+}
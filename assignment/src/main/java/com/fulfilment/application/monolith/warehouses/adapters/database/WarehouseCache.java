@@ -0,0 +1,113 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Active Warehouse snapshots by business unit code, bounded by size and age.
+ * <p>
+ * A written Warehouse is invalidated when its transaction completes, and until then the writing transaction
+ * reads it from the database: its uncommitted changes are never cached.
+ * A load runs inside the cache entry computation, so an invalidation racing with a load removes the loaded value.
+ * Callers get a copy of the snapshot and can change it.
+ * Only existing Warehouses are cached, unknown business unit codes always go to the database.
+ */
+@ApplicationScoped
+public class WarehouseCache {
+
+  // Transaction resource holding business unit codes written in the transaction
+  private static final String WRITTEN_KEYS = WarehouseCache.class.getName() + ".writtenKeys";
+
+  @Inject
+  private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "warehouse.cache.max-size", defaultValue = "10000")
+  long maxSize;
+  @ConfigProperty(name = "warehouse.cache.expire-after-write", defaultValue = "5m")
+  Duration expireAfterWrite;
+
+  private Cache<String, Warehouse> cache;
+
+  @PostConstruct
+  void init() {
+    cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(expireAfterWrite)
+        .recordStats()
+        .build();
+    // cache_gets{result=hit|miss}, cache_evictions, cache_size
+    CaffeineCacheMetrics.monitor(registry, cache, "warehouse_by_business_unit_code");
+  }
+
+  /**
+   * @param loader reads the active Warehouse from the database, returns null when there is none
+   */
+  public Warehouse get(String buCode, Function<String, Warehouse> loader) {
+    if (writtenInTransaction(buCode)) {
+      return loader.apply(buCode);
+    }
+    var warehouse = cache.get(buCode, loader);
+    return warehouse == null ? null : copy(warehouse);
+  }
+
+  /**
+   * Drops the cached Warehouse when the current transaction completes, must be called by every write.
+   */
+  public void invalidateOnCompletion(String buCode) {
+    @SuppressWarnings("unchecked")
+    var writtenKeys = (Set<String>) transactionSynchronizationRegistry.getResource(WRITTEN_KEYS);
+    if (writtenKeys == null) {
+      var keys = new HashSet<String>();
+      transactionSynchronizationRegistry.putResource(WRITTEN_KEYS, keys);
+      transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+          // Rolled back writes didn't change anything, but dropping a valid snapshot is harmless
+          cache.invalidateAll(keys);
+        }
+      });
+      writtenKeys = keys;
+    }
+    writtenKeys.add(buCode);
+  }
+
+  private boolean writtenInTransaction(String buCode) {
+    if (transactionSynchronizationRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+      return false;
+    }
+    var writtenKeys = transactionSynchronizationRegistry.getResource(WRITTEN_KEYS);
+    return writtenKeys != null && ((Set<?>) writtenKeys).contains(buCode);
+  }
+
+  private static Warehouse copy(Warehouse warehouse) {
+    var copy = new Warehouse();
+    copy.businessUnitCode = warehouse.businessUnitCode;
+    copy.location = warehouse.location;
+    copy.capacity = warehouse.capacity;
+    copy.stock = warehouse.stock;
+    copy.createdAt = warehouse.createdAt;
+    copy.archivedAt = warehouse.archivedAt;
+    return copy;
+  }
+}
@@ -1,53 +1,369 @@
 package com.fulfilment.application.monolith.warehouses.adapters.database;
 
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.models.ArchivedWarehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.CreateWithinLimitsResult;
+import com.fulfilment.application.monolith.warehouses.domain.models.CreateWithinLimitsResult.Outcome;
+import com.fulfilment.application.monolith.warehouses.domain.models.LocationAggregate;
 import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseFilter;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseSummary;
 import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.hibernate.jpa.AvailableHints;
+import org.hibernate.query.NativeQuery;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @ApplicationScoped
 public class WarehouseRepository implements WarehouseStore, PanacheRepository<DbWarehouse> {
 
+  // Rows are read in Postgres cursor chunks of this size
+  private static final int STREAM_FETCH_SIZE = 256;
+  // Adds the rows of the preceding "changes" CTE (location, warehouses, capacity, stock) to the Location aggregates.
+  // Every write of active warehouses ends with it, so the aggregates change in the same statement as the warehouses.
+  private static final String APPLY_CHANGES_TO_AGGREGATES = """
+      insert into location_aggregate as a (location, warehouses, capacity, stock)
+      select location, sum(warehouses), sum(capacity), sum(stock) from changes group by location
+      on conflict (location) do update
+      set warehouses = a.warehouses + excluded.warehouses, capacity = a.capacity + excluded.capacity,
+        stock = a.stock + excluded.stock""";
+
+  @Inject
+  private WarehouseCache warehouseCache;
+
   @Override
   public List<Warehouse> getAll() {
-    return list("archivedAt is null").stream()
+    return listAll().stream()
         .map(DbWarehouse::toWarehouse)
         .toList();
   }
 
+  /**
+   * Selects the listed columns straight into {@link WarehouseSummary}: no entity is loaded, tracked or mapped.
+   * Filters are part of the query, only matching rows leave the database.
+   */
+  @Override
+  public List<WarehouseSummary> listActive(WarehouseFilter filter, String afterBuCode, Integer limit) {
+    var conditions = new ArrayList<String>();
+    var parameters = new HashMap<String, Object>();
+    if (filter.location() != null) {
+      conditions.add("location = :location");
+      parameters.put("location", filter.location());
+    }
+    if (filter.minCapacity() != null) {
+      conditions.add("capacity >= :minCapacity");
+      parameters.put("minCapacity", filter.minCapacity());
+    }
+    if (filter.maxCapacity() != null) {
+      conditions.add("capacity <= :maxCapacity");
+      parameters.put("maxCapacity", filter.maxCapacity());
+    }
+    if (afterBuCode != null) {
+      conditions.add("businessUnitCode > :after");
+      parameters.put("after", afterBuCode);
+    }
+    var query = getEntityManager().createQuery("select new " + WarehouseSummary.class.getName()
+            + "(businessUnitCode, location, capacity, stock) from DbWarehouse" + where(conditions)
+            + " order by businessUnitCode", WarehouseSummary.class)
+        .setHint(AvailableHints.HINT_READ_ONLY, true);
+    parameters.forEach(query::setParameter);
+    if (limit != null) {
+      query.setMaxResults(limit);
+    }
+    return query.getResultList();
+  }
+
+  @Override
+  public Stream<Warehouse> streamActive() {
+    var entityManager = getEntityManager();
+    return findAll(Sort.by("businessUnitCode"))
+        .withHint(AvailableHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+        .withHint(AvailableHints.HINT_READ_ONLY, true)
+        .stream()
+        .map(warehouse -> {
+          // Mapped rows are not needed anymore, keep the persistence context empty
+          entityManager.detach(warehouse);
+          return warehouse.toWarehouse();
+        });
+  }
+
   @Override
   public void create(Warehouse warehouse) {
-    persist(toDbWarehouse(warehouse));
+    warehouseCache.invalidateOnCompletion(warehouse.businessUnitCode);
+    // Inserted right away: a taken business unit code fails the write here, not the commit
+    persistAndFlush(toDbWarehouse(warehouse));
+    changeAggregate(warehouse.location, 1, warehouse.capacity, warehouse.stock);
   }
 
+  /**
+   * Checks the Location limits against its aggregate and inserts the Warehouse when all checks pass, in one round trip.
+   * <p>
+   * The checks read a snapshot taken when the statement starts, and the aggregate is incremented only when
+   * the limits still hold for its latest version: the increment locks the aggregate row, so creations at
+   * the same Location are admitted one after another until commit and can't exceed the limits together.
+   * When the limits hold in the snapshot but not anymore, or a concurrent creation took the business unit code,
+   * nothing is inserted and the result is {@code CONFLICT}.
+   */
+  @Override
+  public CreateWithinLimitsResult tryCreateWithinLimits(Warehouse warehouse) {
+    warehouseCache.invalidateOnCompletion(warehouse.businessUnitCode);
+    var row = (Object[]) getEntityManager().createNativeQuery("""
+            with loc as (
+              select identification, maxNumberOfWarehouses, maxCapacity from location where identification = ?2
+            ), checks as (
+              select exists (select 1 from warehouse where businessUnitCode = ?1) as buExists,
+                loc.identification, loc.maxNumberOfWarehouses, loc.maxCapacity,
+                coalesce(a.warehouses, 0) as warehouses, coalesce(a.capacity, 0) as capacity, coalesce(a.stock, 0) as stock
+              from (select 1) as one left join loc on true left join location_aggregate a on a.location = ?2
+            ), admitted as (
+              insert into location_aggregate as a (location, warehouses, capacity, stock)
+              select checks.identification, 1, ?3, ?4 from checks
+              where not checks.buExists and checks.identification is not null
+                and checks.warehouses < checks.maxNumberOfWarehouses and checks.capacity + ?3 <= checks.maxCapacity
+              on conflict (location) do update
+              set warehouses = a.warehouses + 1, capacity = a.capacity + excluded.capacity, stock = a.stock + excluded.stock
+              where a.warehouses < (select maxNumberOfWarehouses from loc)
+                and a.capacity + excluded.capacity <= (select maxCapacity from loc)
+              returning a.location
+            ), created as (
+              insert into warehouse(id, businessUnitCode, location, capacity, stock, createdAt)
+              select nextval('warehouse_seq'), ?1, admitted.location, ?3, ?4, ?5 from admitted
+              on conflict do nothing
+              returning id
+            )
+            select checks.buExists, checks.identification, checks.maxNumberOfWarehouses, checks.maxCapacity,
+              checks.warehouses, checks.capacity, checks.stock, (select count(*) from admitted), (select count(*) from created)
+            from checks""", Object[].class)
+        .setParameter(1, warehouse.businessUnitCode)
+        .setParameter(2, warehouse.location)
+        .setParameter(3, warehouse.capacity)
+        .setParameter(4, warehouse.stock)
+        .setParameter(5, warehouse.createdAt)
+        .unwrap(NativeQuery.class)
+        // Auto flush only pending Warehouse changes before the statement
+        .addSynchronizedEntityClass(DbWarehouse.class)
+        .addSynchronizedEntityClass(DbLocationAggregate.class)
+        .getSingleResult();
+
+    var location = row[1] == null ? null
+        : new Location((String) row[1], ((Number) row[2]).intValue(), ((Number) row[3]).intValue());
+    var aggregate = new LocationAggregate(warehouse.location,
+        ((Number) row[4]).longValue(), ((Number) row[5]).longValue(), ((Number) row[6]).longValue());
+    boolean admitted = ((Number) row[7]).longValue() == 1;
+    boolean created = ((Number) row[8]).longValue() == 1;
+    Outcome outcome;
+    if (created) {
+      outcome = Outcome.CREATED;
+    } else if ((Boolean) row[0]) {
+      outcome = Outcome.BUSINESS_UNIT_CODE_EXISTS;
+    } else if (location == null) {
+      outcome = Outcome.LOCATION_NOT_FOUND;
+    } else if (aggregate.warehouses() >= location.maxNumberOfWarehouses()) {
+      outcome = Outcome.MAX_NUMBER_OF_WAREHOUSES_REACHED;
+    } else if (aggregate.capacity() + warehouse.capacity > location.maxCapacity()) {
+      outcome = Outcome.MAX_CAPACITY_EXCEEDED;
+    } else {
+      if (admitted) {
+        // Business unit code was taken after the checks, the aggregate row is still locked by this transaction
+        changeAggregate(warehouse.location, -1, -warehouse.capacity, -warehouse.stock);
+      }
+      outcome = Outcome.CONFLICT;
+    }
+    return new CreateWithinLimitsResult(outcome, location, aggregate);
+  }
+
+  /**
+   * Archiving a Warehouse, by setting its archivedAt, moves its row from the warehouse table
+   * to the warehouse_archive table in one statement.
+   */
   @Override
   public void update(Warehouse warehouse) {
-    update("location = ?1, capacity = ?2, stock = ?3, archivedAt = ?4 where businessUnitCode = ?5 and archivedAt is null",
-        warehouse.location,
-        warehouse.capacity,
-        warehouse.stock,
-        // warehouse.createdAt, createdAt set only at create
-        warehouse.archivedAt, // We can archive entity by setting archivedAt, this is one time operation
-        warehouse.businessUnitCode);
+    warehouseCache.invalidateOnCompletion(warehouse.businessUnitCode);
+    if (warehouse.archivedAt != null) {
+      getEntityManager().createNativeQuery("""
+              with moved as (
+                delete from warehouse where businessUnitCode = ?1
+                returning id, businessUnitCode, location, capacity, stock, createdAt
+              ), archived as (
+                insert into warehouse_archive(id, businessUnitCode, location, capacity, stock, createdAt, archivedAt)
+                select id, businessUnitCode, location, capacity, stock, createdAt, ?2 from moved
+              ), changes as (
+                select location, -1 as warehouses, -capacity as capacity, -stock as stock from moved
+              )
+              """ + APPLY_CHANGES_TO_AGGREGATES)
+          .setParameter(1, warehouse.businessUnitCode)
+          .setParameter(2, warehouse.archivedAt)
+          .unwrap(NativeQuery.class)
+          // Flush and invalidate only the moved entities, not every cached entity
+          .addSynchronizedEntityClass(DbWarehouse.class)
+          .addSynchronizedEntityClass(DbArchivedWarehouse.class)
+          .addSynchronizedEntityClass(DbLocationAggregate.class)
+          .executeUpdate();
+      return;
+    }
+    getEntityManager().createNativeQuery("""
+            with old as (
+              select id, location, capacity, stock from warehouse where businessUnitCode = ?4 for update
+            ), changed as (
+              update warehouse w set location = ?1, capacity = ?2, stock = ?3, createdAt = coalesce(cast(?5 as timestamp), w.createdAt)
+              from old where w.id = old.id
+              returning w.location, w.capacity, w.stock
+            ), changes as (
+              select location, -1 as warehouses, -capacity as capacity, -stock as stock from old
+              union all
+              select location, 1, capacity, stock from changed
+            )
+            """ + APPLY_CHANGES_TO_AGGREGATES)
+        .setParameter(1, warehouse.location)
+        .setParameter(2, warehouse.capacity)
+        .setParameter(3, warehouse.stock)
+        .setParameter(4, warehouse.businessUnitCode)
+        .setParameter(5, warehouse.createdAt)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(DbWarehouse.class)
+        .addSynchronizedEntityClass(DbLocationAggregate.class)
+        .executeUpdate();
   }
 
+  /**
+   * Moves the first active Warehouses matching the criteria to the warehouse_archive table, in one statement.
+   * A row locked by a concurrent write is waited for. When that write changed the row so it doesn't match anymore,
+   * the statement moves fewer rows than asked and runs again for the rest, until it moves none.
+   */
   @Override
-  public void remove(Warehouse warehouse) {
-    delete("businessUnitCode", warehouse.businessUnitCode);
+  public int archiveChunk(String location, LocalDateTime createdBefore, LocalDateTime archivedAt, int chunkSize) {
+    var conditions = new ArrayList<String>();
+    var parameters = new HashMap<String, Object>();
+    if (location != null) {
+      conditions.add("location = :location");
+      parameters.put("location", location);
+    }
+    if (createdBefore != null) {
+      conditions.add("createdAt < :createdBefore");
+      parameters.put("createdBefore", createdBefore);
+    }
+    int archived = 0;
+    while (archived < chunkSize) {
+      int moved = archiveMatching(where(conditions), parameters, archivedAt, chunkSize - archived);
+      if (moved == 0) {
+        break;
+      }
+      archived += moved;
+    }
+    return archived;
+  }
+
+  private int archiveMatching(String where, Map<String, Object> parameters, LocalDateTime archivedAt, int limit) {
+    var query = getEntityManager().createNativeQuery("""
+            with moved as (
+              delete from warehouse where id in (
+                select id from warehouse%s order by id limit :limit for update)
+              returning id, businessUnitCode, location, capacity, stock, createdAt
+            ), archived as (
+              insert into warehouse_archive(id, businessUnitCode, location, capacity, stock, createdAt, archivedAt)
+              select id, businessUnitCode, location, capacity, stock, createdAt, :archivedAt from moved
+            ), changes as (
+              select location, -1 as warehouses, -capacity as capacity, -stock as stock from moved
+            ), aggregated as (
+              %s
+            )
+            select businessUnitCode from moved""".formatted(where, APPLY_CHANGES_TO_AGGREGATES), String.class)
+        .setParameter("limit", limit)
+        .setParameter("archivedAt", archivedAt);
+    parameters.forEach(query::setParameter);
+    @SuppressWarnings("unchecked")
+    List<String> businessUnitCodes = query.unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(DbWarehouse.class)
+        .addSynchronizedEntityClass(DbArchivedWarehouse.class)
+        .addSynchronizedEntityClass(DbLocationAggregate.class)
+        .getResultList();
+    businessUnitCodes.forEach(warehouseCache::invalidateOnCompletion);
+    return businessUnitCodes.size();
   }
 
   @Override
   public Warehouse findByBusinessUnitCode(String buCode) {
-    return find("businessUnitCode = ?1 and archivedAt is null", buCode).firstResultOptional()
+    return warehouseCache.get(buCode, key -> find("businessUnitCode", key).firstResultOptional()
         .map(DbWarehouse::toWarehouse)
-        .orElse(null);
+        .orElse(null));
+  }
+
+  @Override
+  public List<String> findActiveBusinessUnitCodes(Collection<String> buCodes) {
+    return getEntityManager().createQuery(
+            "select businessUnitCode from DbWarehouse where businessUnitCode in ?1", String.class)
+        .setParameter(1, buCodes)
+        .getResultList();
   }
 
   @Override
   public long countByLocation(String location) {
-    return count("location = ?1 and archivedAt is null", location);
+    return count("location", location);
+  }
+
+  @Override
+  public LocationAggregate findAggregate(String location) {
+    // Projection, not an entity: native writes don't refresh an aggregate already in the persistence context
+    return getEntityManager().createQuery("select new " + LocationAggregate.class.getName()
+            + "(location, warehouses, capacity, stock) from DbLocationAggregate where location = ?1", LocationAggregate.class)
+        .setParameter(1, location)
+        .getResultStream()
+        .findFirst()
+        .orElseGet(() -> LocationAggregate.empty(location));
+  }
+
+  @Override
+  public List<ArchivedWarehouse> listArchived(String buCode, String location, Long afterId, int limit) {
+    var conditions = new ArrayList<String>();
+    var parameters = new HashMap<String, Object>();
+    if (buCode != null) {
+      conditions.add("businessUnitCode = :businessUnitCode");
+      parameters.put("businessUnitCode", buCode);
+    }
+    if (location != null) {
+      conditions.add("location = :location");
+      parameters.put("location", location);
+    }
+    if (afterId != null) {
+      // Keyset of the archiving order, archivedAt of the given archived Warehouse is read in the same statement
+      conditions.add("(archivedAt > (select a.archivedAt from DbArchivedWarehouse a where a.id = :after)"
+          + " or archivedAt = (select a.archivedAt from DbArchivedWarehouse a where a.id = :after) and id > :after)");
+      parameters.put("after", afterId);
+    }
+    var query = getEntityManager().createQuery("select new " + ArchivedWarehouse.class.getName()
+            + "(id, businessUnitCode, location, capacity, stock, createdAt, archivedAt) from DbArchivedWarehouse"
+            + where(conditions) + " order by archivedAt, id", ArchivedWarehouse.class)
+        .setHint(AvailableHints.HINT_READ_ONLY, true)
+        .setMaxResults(limit);
+    parameters.forEach(query::setParameter);
+    return query.getResultList();
+  }
+
+  private void changeAggregate(String location, int warehouses, int capacity, int stock) {
+    getEntityManager().createNativeQuery("""
+            with changes as (select cast(?1 as varchar) as location, ?2 as warehouses, ?3 as capacity, ?4 as stock)
+            """ + APPLY_CHANGES_TO_AGGREGATES)
+        .setParameter(1, location)
+        .setParameter(2, warehouses)
+        .setParameter(3, capacity)
+        .setParameter(4, stock)
+        .unwrap(NativeQuery.class)
+        .addSynchronizedEntityClass(DbLocationAggregate.class)
+        .executeUpdate();
+  }
+
+  private static String where(List<String> conditions) {
+    return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
   }
 
   public DbWarehouse toDbWarehouse(Warehouse data) {
@@ -56,6 +372,7 @@ public class WarehouseRepository implements WarehouseStore, PanacheRepository<Db
     warehouse.location = data.location;
     warehouse.capacity = data.capacity;
     warehouse.stock = data.stock;
+    warehouse.createdAt = data.createdAt;
     return warehouse;
   }
 }
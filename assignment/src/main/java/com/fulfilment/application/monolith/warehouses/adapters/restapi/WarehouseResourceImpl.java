@@ -1,23 +1,38 @@
 package com.fulfilment.application.monolith.warehouses.adapters.restapi;
 
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseFilter;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseSummary;
 import com.fulfilment.application.monolith.warehouses.domain.ports.ArchiveWarehouseOperation;
+import com.fulfilment.application.monolith.warehouses.domain.ports.BulkArchiveWarehouseOperation;
 import com.fulfilment.application.monolith.warehouses.domain.ports.CreateWarehouseOperation;
 import com.fulfilment.application.monolith.warehouses.domain.ports.ReplaceWarehouseOperation;
 import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fulfilment.application.monolith.common.Idempotent;
+import com.fulfilment.application.monolith.common.JsonArrayStreamingOutput;
+import com.fulfilment.application.monolith.common.KeysetPagination;
 import com.warehouse.api.WarehouseResource;
+import com.warehouse.api.beans.ArchivedWarehouse;
+import com.warehouse.api.beans.BulkArchive;
+import com.warehouse.api.beans.BulkArchiveResult;
 import com.warehouse.api.beans.Warehouse;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.enums.ParameterIn;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 
 @ApplicationScoped
@@ -28,22 +43,95 @@ public class WarehouseResourceImpl implements WarehouseResource {
   @Inject
   private ArchiveWarehouseOperation archiveWarehouseOperation;
   @Inject
+  private BulkArchiveWarehouseOperation bulkArchiveWarehouseOperation;
+  @Inject
   private CreateWarehouseOperation createWarehouseOperation;
   @Inject
   private ReplaceWarehouseOperation replaceWarehouseOperation;
+  @Inject
+  private ObjectMapper objectMapper;
 
   @Override
-  @Operation(summary = "List all warehouse units", description = "Returns a list of all warehouse units.")
+  @Operation(summary = "List all warehouse units", description = "Returns a list of all warehouse units sorted by business unit code, "
+      + "optionally at a location and within a capacity range. "
+      + "With a limit returns a single page of warehouse units, after the given one.")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "List of warehouse units retrieved successfully",
+          content = @Content(mediaType = "application/json", schema = @Schema(implementation = Warehouse.class))),
+      @APIResponse(responseCode = "422", description = "Invalid limit or capacity range")
+  })
+  public List<Warehouse> listAllWarehousesUnits(
+      @Parameter(description = "Maximum number of warehouse units in the page") Integer limit,
+      @Parameter(description = "Business unit code of the last warehouse of the previous page") String after,
+      @Parameter(description = "Location identifier of the warehouse units") String location,
+      @Parameter(description = "Minimum capacity of the warehouse units, inclusive") Integer minCapacity,
+      @Parameter(description = "Maximum capacity of the warehouse units, inclusive") Integer maxCapacity) {
+    if (minCapacity != null && maxCapacity != null && minCapacity > maxCapacity) {
+      throw new WebApplicationException("Min capacity must not be greater than max capacity.", 422);
+    }
+    var filter = new WarehouseFilter(location, minCapacity, maxCapacity);
+    return warehouseStore.listActive(filter, after, limit == null ? null : KeysetPagination.checkLimit(limit)).stream()
+        .map(this::toWarehouseResponse)
+        .toList();
+  }
+
+  @Override
+  @Operation(summary = "Stream all warehouse units", description = "Returns a list of all warehouse units sorted by business unit code. "
+      + "Warehouse units are written to the response while they are read from the database.")
   @APIResponses(value = {
       @APIResponse(responseCode = "200", description = "List of warehouse units retrieved successfully",
           content = @Content(mediaType = "application/json", schema = @Schema(implementation = Warehouse.class)))
   })
-  public List<Warehouse> listAllWarehousesUnits() {
-    return warehouseStore.getAll().stream().map(this::toWarehouseResponse).toList();
+  public Response streamAllWarehouseUnits() {
+    var warehouses = new JsonArrayStreamingOutput<>(objectMapper,
+        () -> warehouseStore.streamActive().map(this::toWarehouseResponse));
+    return Response.ok(warehouses).build();
+  }
+
+  @Override
+  @Operation(summary = "List archived warehouse units", description = "Returns a list of archived warehouse units sorted by archiving order, "
+      + "optionally of a business unit code and at a location. Returns a single page of archived warehouse units, after the given one.")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "List of archived warehouse units retrieved successfully",
+          content = @Content(mediaType = "application/json", schema = @Schema(implementation = ArchivedWarehouse.class))),
+      @APIResponse(responseCode = "422", description = "Invalid limit")
+  })
+  public List<ArchivedWarehouse> listArchivedWarehouseUnits(
+      @Parameter(description = "Business unit code of the archived warehouse units") String businessUnitCode,
+      @Parameter(description = "Location identifier of the archived warehouse units") String location,
+      @Parameter(description = "Maximum number of archived warehouse units in the page") Integer limit,
+      @Parameter(description = "Id of the last archived warehouse unit of the previous page") Long after) {
+    // The archive grows without bound, it is always read page by page
+    int pageSize = limit == null ? KeysetPagination.MAX_LIMIT : KeysetPagination.checkLimit(limit);
+    return warehouseStore.listArchived(businessUnitCode, location, after, pageSize).stream()
+        .map(WarehouseResourceImpl::toArchivedWarehouseResponse)
+        .toList();
+  }
+
+  @Override
+  @Idempotent
+  @Operation(summary = "Archive warehouse units in bulk", description = "Archives all active warehouse units at a location, "
+      + "created before a cutoff, or both. Warehouse units are archived in chunks, every chunk in its own transaction.")
+  @APIResponses(value = {
+      @APIResponse(responseCode = "200", description = "Warehouse units archived successfully",
+          content = @Content(mediaType = "application/json", schema = @Schema(implementation = BulkArchiveResult.class))),
+      @APIResponse(responseCode = "400", description = "No location or cutoff, or location doesn't exist")
+  })
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
+  public BulkArchiveResult archiveWarehouseUnitsInBulk(
+      @Parameter(description = "Location and creation cutoff of the warehouse units to archive", required = true) @NotNull BulkArchive data) {
+    var createdBefore = data.getCreatedBefore() == null ? null
+        : LocalDateTime.ofInstant(data.getCreatedBefore().toInstant(), ZoneId.systemDefault());
+    var result = bulkArchiveWarehouseOperation.archive(data.getLocation(), createdBefore);
+    var response = new BulkArchiveResult();
+    response.setArchived(result.archived());
+    response.setChunks(result.chunks());
+    return response;
   }
 
   @Transactional
   @Override
+  @Idempotent
   @Operation(summary = "Create a new warehouse unit", description = "Creates a new warehouse unit in the system.")
   @APIResponses(value = {
       @APIResponse(responseCode = "201", description = "Warehouse unit created successfully",
@@ -51,6 +139,7 @@ public class WarehouseResourceImpl implements WarehouseResource {
       @APIResponse(responseCode = "409", description = "Conflict creating warehouses at the same location"),
       @APIResponse(responseCode = "422", description = "Invalid input")
   })
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
   public Warehouse createANewWarehouseUnit(
       @Parameter(description = "Warehouse object that needs to be created", required = true) @NotNull Warehouse data) {
     if (data.getId() != null) {
@@ -80,11 +169,13 @@ public class WarehouseResourceImpl implements WarehouseResource {
 
   @Transactional
   @Override
+  @Idempotent
   @Operation(summary = "Archive a warehouse unit by ID", description = "Archives a warehouse unit in the system by business unit code.")
   @APIResponses(value = {
       @APIResponse(responseCode = "204", description = "Warehouse unit archived successfully"),
       @APIResponse(responseCode = "404", description = "Warehouse unit not found")
   })
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
   public void archiveAWarehouseUnitByID(
       @Parameter(description = "Business unit code of the warehouse to archive", required = true) String buCode) {
     var warehouse = warehouseStore.findByBusinessUnitCode(buCode);
@@ -96,6 +187,7 @@ public class WarehouseResourceImpl implements WarehouseResource {
 
   @Transactional
   @Override
+  @Idempotent
   @Operation(summary = "Replace the current active warehouse", description = "Replaces the current active warehouse unit in the system by business unit code.")
   @APIResponses(value = {
       @APIResponse(responseCode = "200", description = "Warehouse unit replaced successfully",
@@ -103,6 +195,7 @@ public class WarehouseResourceImpl implements WarehouseResource {
       @APIResponse(responseCode = "404", description = "Warehouse unit not found"),
       @APIResponse(responseCode = "422", description = "Invalid input")
   })
+  @Parameter(name = Idempotent.HEADER, in = ParameterIn.HEADER, description = Idempotent.DESCRIPTION)
   public Warehouse replaceTheCurrentActiveWarehouse(
       @Parameter(description = "Business unit code of the warehouse to replace", required = true) String buCode,
       @Parameter(description = "Warehouse object with updated details", required = true) @NotNull Warehouse data) {
@@ -115,6 +208,15 @@ public class WarehouseResourceImpl implements WarehouseResource {
     return toWarehouseResponse(newWarehouse);
   }
 
+  private Warehouse toWarehouseResponse(WarehouseSummary warehouse) {
+    var response = new Warehouse();
+    response.setBusinessUnitCode(warehouse.businessUnitCode());
+    response.setLocation(warehouse.location());
+    response.setCapacity(warehouse.capacity());
+    response.setStock(warehouse.stock());
+    return response;
+  }
+
   private Warehouse toWarehouseResponse(
       com.fulfilment.application.monolith.warehouses.domain.models.Warehouse warehouse) {
     var response = new Warehouse();
@@ -126,6 +228,23 @@ public class WarehouseResourceImpl implements WarehouseResource {
     return response;
   }
 
+  private static ArchivedWarehouse toArchivedWarehouseResponse(
+      com.fulfilment.application.monolith.warehouses.domain.models.ArchivedWarehouse warehouse) {
+    var response = new ArchivedWarehouse();
+    response.setId(warehouse.id());
+    response.setBusinessUnitCode(warehouse.businessUnitCode());
+    response.setLocation(warehouse.location());
+    response.setCapacity(warehouse.capacity());
+    response.setStock(warehouse.stock());
+    response.setCreatedAt(toDate(warehouse.createdAt()));
+    response.setArchivedAt(toDate(warehouse.archivedAt()));
+    return response;
+  }
+
+  private static Date toDate(LocalDateTime dateTime) {
+    return dateTime == null ? null : Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+  }
+
   public com.fulfilment.application.monolith.warehouses.domain.models.Warehouse toWarehouse(Warehouse data) {
     var warehouse = new com.fulfilment.application.monolith.warehouses.domain.models.Warehouse();
     warehouse.businessUnitCode = data.getBusinessUnitCode();
@@ -0,0 +1,18 @@
+package com.fulfilment.application.monolith.warehouses.domain.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * Warehouse that is not active anymore, kept for history.
+ *
+ * @param id unique across archived Warehouses, the id the Warehouse had while active
+ */
+public record ArchivedWarehouse(
+    Long id,
+    String businessUnitCode,
+    String location,
+    Integer capacity,
+    Integer stock,
+    LocalDateTime createdAt,
+    LocalDateTime archivedAt) {
+}
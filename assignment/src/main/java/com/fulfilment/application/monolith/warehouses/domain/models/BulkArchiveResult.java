@@ -0,0 +1,8 @@
+package com.fulfilment.application.monolith.warehouses.domain.models;
+
+/**
+ * @param archived number of Warehouses archived
+ * @param chunks   number of committed chunks
+ */
+public record BulkArchiveResult(long archived, int chunks) {
+}
@@ -0,0 +1,23 @@
+package com.fulfilment.application.monolith.warehouses.domain.models;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+
+/**
+ * Outcome of a Warehouse creation checked against its limits in the database.
+ *
+ * @param outcome   created, or the first failed check in the order the use case validates them
+ * @param location  Location of the Warehouse, null when it doesn't exist
+ * @param aggregate active Warehouses at the Location seen by the checks
+ */
+public record CreateWithinLimitsResult(Outcome outcome, Location location, LocationAggregate aggregate) {
+
+  public enum Outcome {
+    CREATED,
+    BUSINESS_UNIT_CODE_EXISTS,
+    LOCATION_NOT_FOUND,
+    MAX_NUMBER_OF_WAREHOUSES_REACHED,
+    MAX_CAPACITY_EXCEEDED,
+    // A concurrent creation changed the Location or took the business unit code after the checks, can be retried
+    CONFLICT
+  }
+}
@@ -0,0 +1,15 @@
+package com.fulfilment.application.monolith.warehouses.domain.models;
+
+/**
+ * Totals of the active Warehouses at a Location, maintained by every Warehouse write.
+ *
+ * @param warehouses number of active Warehouses
+ * @param capacity   sum of their capacities
+ * @param stock      sum of their stocks
+ */
+public record LocationAggregate(String location, long warehouses, long capacity, long stock) {
+
+  public static LocationAggregate empty(String location) {
+    return new LocationAggregate(location, 0, 0, 0);
+  }
+}
@@ -0,0 +1,13 @@
+package com.fulfilment.application.monolith.warehouses.domain.models;
+
+/**
+ * Filter of listed Warehouses, a null field doesn't filter.
+ *
+ * @param minCapacity inclusive
+ * @param maxCapacity inclusive
+ */
+public record WarehouseFilter(
+    String location,
+    Integer minCapacity,
+    Integer maxCapacity) {
+}
@@ -0,0 +1,11 @@
+package com.fulfilment.application.monolith.warehouses.domain.models;
+
+/**
+ * Listed columns of an active Warehouse, read without loading the Warehouse entity.
+ */
+public record WarehouseSummary(
+    String businessUnitCode,
+    String location,
+    Integer capacity,
+    Integer stock) {
+}
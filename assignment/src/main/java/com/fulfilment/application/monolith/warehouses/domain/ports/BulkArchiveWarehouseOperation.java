@@ -0,0 +1,16 @@
+package com.fulfilment.application.monolith.warehouses.domain.ports;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.BulkArchiveResult;
+
+import java.time.LocalDateTime;
+
+public interface BulkArchiveWarehouseOperation {
+
+  /**
+   * Archives active Warehouses at the Location and created before the cutoff, at least one of them must be given.
+   *
+   * @param location      Location identifier, or any when null
+   * @param createdBefore creation cutoff, exclusive, or any when null
+   */
+  BulkArchiveResult archive(String location, LocalDateTime createdBefore);
+}
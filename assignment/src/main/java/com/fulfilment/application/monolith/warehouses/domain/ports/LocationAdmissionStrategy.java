@@ -0,0 +1,35 @@
+package com.fulfilment.application.monolith.warehouses.domain.ports;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import jakarta.ws.rs.WebApplicationException;
+
+/**
+ * Guards the maximum number of warehouses at a Location against concurrent Warehouse creations.
+ * <p>
+ * Counting the warehouses and inserting a new one is a read-then-write race:
+ * two transactions can both see the last free slot (phantom read).
+ * A strategy admits the new Warehouse only when no concurrent creation can break the limit,
+ * and inserts it while the admission holds.
+ * The strategy is selected with {@code warehouse.location-admission.strategy}.
+ */
+public interface LocationAdmissionStrategy {
+
+  String name();
+
+  /**
+   * @param create inserts the Warehouse in the admitting transaction, may run more than once on retry
+   * @throws WebApplicationException 400 when the Location is full, 409 when contention couldn't be resolved
+   */
+  void admit(Location location, Runnable create);
+
+  static void checkNumberOfWarehouses(long warehousesInTheSameLocation, Location location) {
+    if (warehousesInTheSameLocation + 1 > location.maxNumberOfWarehouses()) {
+      throw numberOfWarehousesReached(location);
+    }
+  }
+
+  static WebApplicationException numberOfWarehousesReached(Location location) {
+    return new WebApplicationException("Can not create Warehouse; Number of warehouses at Location reached maximum [location=%s, maxNumberOfWarehouses=%s]"
+        .formatted(location.identification(), location.maxNumberOfWarehouses()), 400);
+  }
+}
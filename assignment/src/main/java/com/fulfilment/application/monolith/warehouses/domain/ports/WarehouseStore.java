@@ -1,20 +1,85 @@
 package com.fulfilment.application.monolith.warehouses.domain.ports;
 
+import com.fulfilment.application.monolith.warehouses.domain.models.ArchivedWarehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.CreateWithinLimitsResult;
+import com.fulfilment.application.monolith.warehouses.domain.models.LocationAggregate;
 import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseFilter;
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseSummary;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface WarehouseStore {
 
   List<Warehouse> getAll();
 
+  /**
+   * Active Warehouses matching the filter, sorted by business unit code.
+   *
+   * @param afterBuCode only Warehouses after this business unit code, or all when null
+   * @param limit       maximum number of Warehouses, or all when null
+   */
+  List<WarehouseSummary> listActive(WarehouseFilter filter, String afterBuCode, Integer limit);
+
+  /**
+   * Active Warehouses sorted by business unit code, read lazily. Must be consumed and closed within a transaction.
+   */
+  Stream<Warehouse> streamActive();
+
   void create(Warehouse warehouse);
 
+  /**
+   * Checks business unit code uniqueness, max number of warehouses and max total capacity at the Location
+   * and inserts the Warehouse in a single statement. Doesn't insert the Warehouse when a check fails.
+   */
+  CreateWithinLimitsResult tryCreateWithinLimits(Warehouse warehouse);
+
+  /**
+   * Archives the Warehouse when its archivedAt is set, otherwise replaces its location, capacity, stock
+   * and, when set, createdAt.
+   */
   void update(Warehouse warehouse);
 
-  void remove(Warehouse warehouse);
+  /**
+   * Archives up to {@code chunkSize} active Warehouses at the Location and created before the cutoff.
+   * Warehouses locked by concurrent writes are waited for, none of the matching ones is left active.
+   *
+   * @param location      Location identifier, or any when null
+   * @param createdBefore creation cutoff, exclusive, or any when null
+   * @return number of archived Warehouses, less than {@code chunkSize} when no matching Warehouse is left
+   */
+  int archiveChunk(String location, LocalDateTime createdBefore, LocalDateTime archivedAt, int chunkSize);
 
   Warehouse findByBusinessUnitCode(String buCode);
 
+  /**
+   * @return the given business unit codes that are taken by active Warehouses
+   */
+  List<String> findActiveBusinessUnitCodes(Collection<String> buCodes);
+
+  /**
+   * Counts the active Warehouses in the warehouse table, checks read {@link #findAggregate(String)} instead.
+   */
   long countByLocation(String location);
+
+  /**
+   * Totals of the active Warehouses at the Location, read in O(1). Every write above keeps them up to date
+   * in the same transaction.
+   *
+   * @return empty totals when the Location has no Warehouses
+   */
+  LocationAggregate findAggregate(String location);
+
+  /**
+   * Archived Warehouses matching the given business unit code and Location, in archiving order:
+   * sorted by archivedAt, then by id.
+   *
+   * @param buCode   business unit code, or any when null
+   * @param location Location identifier, or any when null
+   * @param afterId  only archived Warehouses after the one with this id, or all when null
+   */
+  List<ArchivedWarehouse> listArchived(String buCode, String location, Long afterId, int limit);
 }
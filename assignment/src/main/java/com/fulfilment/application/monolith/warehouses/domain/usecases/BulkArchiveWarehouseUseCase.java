@@ -0,0 +1,73 @@
+package com.fulfilment.application.monolith.warehouses.domain.usecases;
+
+import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
+import com.fulfilment.application.monolith.warehouses.domain.models.BulkArchiveResult;
+import com.fulfilment.application.monolith.warehouses.domain.ports.BulkArchiveWarehouseOperation;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Archives Warehouses in chunks, every chunk is a single set-based statement in its own transaction.
+ * <p>
+ * Short transactions keep row locks and the archive statement small, and a failure loses only the current chunk:
+ * the next run archives what is left. The throttle between chunks leaves room for other writers.
+ * Like a single archive, only active Warehouses are archived, and archiving an archived Warehouse does nothing.
+ */
+@ApplicationScoped
+public class BulkArchiveWarehouseUseCase implements BulkArchiveWarehouseOperation {
+
+  @Inject
+  private WarehouseStore warehouseStore;
+  @Inject
+  private LocationResolverOperation locationResolverOperation;
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "warehouse.bulk-archive.chunk-size", defaultValue = "500")
+  int chunkSize;
+  @ConfigProperty(name = "warehouse.bulk-archive.throttle", defaultValue = "50ms")
+  Duration throttle;
+
+  @Override
+  public BulkArchiveResult archive(String location, LocalDateTime createdBefore) {
+    if (location == null && createdBefore == null) {
+      throw new WebApplicationException("Can not archive Warehouses; No location or createdBefore provided", 400);
+    }
+    if (location != null && locationResolverOperation.resolveByIdentifier(location) == null) {
+      throw new WebApplicationException("Can not archive Warehouses; Location [location=%s] doesn't exist".formatted(location), 400);
+    }
+    var archivedAt = LocalDateTime.now();
+    long archived = 0;
+    int chunks = 0;
+    while (true) {
+      int chunk = QuarkusTransaction.requiringNew()
+          .call(() -> warehouseStore.archiveChunk(location, createdBefore, archivedAt, chunkSize));
+      if (chunk > 0) {
+        archived += chunk;
+        chunks++;
+        registry.counter("warehouse_bulk_archived").increment(chunk);
+      }
+      if (chunk < chunkSize) {
+        return new BulkArchiveResult(archived, chunks);
+      }
+      sleep(throttle);
+    }
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WebApplicationException("Interrupted while archiving Warehouses", 503);
+    }
+  }
+}
@@ -4,25 +4,55 @@ import com.fulfilment.application.monolith.locations.domain.models.Location;
 import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
 import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
 import com.fulfilment.application.monolith.warehouses.domain.ports.CreateWarehouseOperation;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationAdmissionStrategy;
 import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
-import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
-import jakarta.persistence.PessimisticLockException;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.time.LocalDateTime;
 
 @ApplicationScoped
 public class CreateWarehouseUseCase implements CreateWarehouseOperation {
 
+  // Checks and insert in one database round trip, see WarehouseStore.tryCreateWithinLimits
+  public static final String SINGLE_STATEMENT = "single-statement";
+  // Creations queued per Location and committed in batches, see WarehouseCreationSequencer
+  public static final String GROUP_COMMIT = "group-commit";
+
   @Inject
   private WarehouseStore warehouseStore;
   @Inject
   private LocationResolverOperation locationResolverOperation;
   @Inject
-  private MeterRegistry registry;
+  private WarehouseCreationSequencer warehouseCreationSequencer;
+  @Inject
+  @Any
+  private Instance<LocationAdmissionStrategy> admissionStrategies;
+
+  @ConfigProperty(name = "warehouse.location-admission.strategy", defaultValue = SINGLE_STATEMENT)
+  String admissionStrategyName;
+  @ConfigProperty(name = "warehouse.location-admission.max-retries", defaultValue = "5")
+  int maxRetries;
+
+  // Null when Warehouses are created with the single statement or in group commit
+  private LocationAdmissionStrategy admissionStrategy;
+
+  @PostConstruct
+  void init() {
+    if (SINGLE_STATEMENT.equals(admissionStrategyName) || GROUP_COMMIT.equals(admissionStrategyName)) {
+      return;
+    }
+    admissionStrategy = admissionStrategies.stream()
+        .filter(strategy -> strategy.name().equals(admissionStrategyName))
+        .findFirst()
+        .orElseThrow(() -> new IllegalStateException("Unknown location admission strategy " + admissionStrategyName));
+  }
 
   @Override
   @Transactional
@@ -33,90 +63,112 @@ public class CreateWarehouseUseCase implements CreateWarehouseOperation {
     if (warehouse.location == null) {
       throw new WebApplicationException("Can not create Warehouse; No Warehouse location provided", 400);
     }
+    switch (admissionStrategyName) {
+      case SINGLE_STATEMENT -> createWithinLimits(warehouse);
+      case GROUP_COMMIT -> createInGroupCommit(warehouse);
+      default -> createWithAdmission(warehouse);
+    }
+  }
 
+  private void createWithAdmission(Warehouse warehouse) {
     // Business Unit Code Verification
     // Ensure that the specified business unit code for the warehouse doesn't already exists.
     var oldWarehouse = warehouseStore.findByBusinessUnitCode(warehouse.businessUnitCode);
     if (oldWarehouse != null) {
-      throw new WebApplicationException("Can not create Warehouse; Warehouse with [businessUnitCode=%s] already exists".formatted(warehouse.businessUnitCode), 400);
+      throw businessUnitCodeExists(warehouse);
     }
     // Location Validation
     // Confirm that the warehouse location is valid, meaning it must be an existing valid location.
+    var location = resolveLocation(warehouse);
+    // Warehouse Creation Feasibility
+    // Check if a new warehouse can be created at the specified location or if the maximum number of warehouses has already been reached.
+    // Fast path: full Locations are rejected without taking part in the admission.
+    // Concurrent creations can take the last free slot after this check (phantom read),
+    // the admission strategy repeats the check where no concurrent creation can break it.
+    // See LocationAdmissionStrategy implementations: row lock, optimistic counter, advisory lock, SERIALIZABLE TX.
+    var aggregate = warehouseStore.findAggregate(warehouse.location);
+    LocationAdmissionStrategy.checkNumberOfWarehouses(aggregate.warehouses(), location);
+    checkCapacity(warehouse, location, aggregate.capacity());
+    checkStock(warehouse);
+    admissionStrategy.admit(location, () -> {
+      // Strategies serialize the number of warehouses, capacity is checked again inside the admission
+      checkCapacity(warehouse, location, warehouseStore.findAggregate(warehouse.location).capacity());
+      warehouse.createdAt = LocalDateTime.now();
+      warehouseStore.create(warehouse);
+    });
+  }
+
+  private void createInGroupCommit(Warehouse warehouse) {
+    // Checked before queueing, a check failing with anything but a 400 would fail the whole batch
+    if (warehouse.capacity == null) {
+      throw new WebApplicationException("Can not create Warehouse; No Warehouse capacity provided", 400);
+    }
+    var location = resolveLocation(warehouse);
+    warehouse.createdAt = LocalDateTime.now();
+    warehouseCreationSequencer.create(location, warehouse);
+  }
+
+  private Location resolveLocation(Warehouse warehouse) {
     var location = locationResolverOperation.resolveByIdentifier(warehouse.location);
     if (location == null) {
       throw new WebApplicationException("Can not create Warehouse; Location for warehouse [location=%s] doesn't exist".formatted(warehouse.location), 400);
     }
-    // Warehouse Creation Feasibility
-    // Check if a new warehouse can be created at the specified location or if the maximum number of warehouses has already been reached.
-    // TODO srcmaxim: How to check if warehouse can be created at the specified location?
-    // TODO srcmaxim: Should I count by location only or by location and not archived Warehouses? My implementation is count by location and not archived Warehouses.
-    // TODO srcmaxim: We can't guarantee that new warehouses are not added as part of other transactions.
-    // This is phantom read problem, it happens when you read data twice and new data appears from other TXs.
-    //
-    // 1. We can fix it by using SERIALIZABLE TX. Our TX will think as it's executes sequentially w/o affect of other TXs.
-    //
-    // 2. Lock on Location table row on READ with `FOR UPDATE`:
-    //     public Long findUnprocessedEvents(String location) {
-    //        return select("location", location)
-    //                .withLock(LockModeType.WRITE)
-    //                .first();
-    //    }
-    //    Other transactions that want to add Warehouse must wait on one row.
-    //    We can force `NOWAIT` policy to prevent deadlock.
-    //    If we don't want to wait on lock we can return with HTTP 409 Concurrent modification exception.
-    //
-    // 3. We can also do the same with optimistic locking, and for that we need to create new table LocationWarehouseCount.
-    //    First we read locationCount from LocationWarehouseCount. Then we do business logic w/o TX running.
-    //    Then when we want to add Warehouse we run 3 SQL queries in one TX in DB:
-    //    SELECT 1 FROM locationwarehousecount WHERE location = :loc AND count = :oldCount FOR UPDATE;
-    //    INSERT INTO warehouse (...) VALUES (...);
-    //    UPDATE locationwarehousecount set count =?:newCount location WHERE location =?:loc AND count =?:oldCount FOR UPDATE;
-    //
-    // 4. Also we can do CQRS to process all data as a stream of events.
-    //    This is what Picnic does for updating warehouses. But, do you want to rewrite all app? :)
-    //
-    // I'll go with solution #2 because it's the most straightforward of all.
-    //
-    long warehousesInTheSameLocation = warehouseStore.countByLocation(warehouse.location);
-    canCreateWarehouseAtLocation(warehousesInTheSameLocation, location);
-    try {
-      // Try to convert Location READ lock to WRITE lock.
-      // Lock on Location with `FOR UPDATE NOWAIT` to prevent deadlock
-      location = locationResolverOperation.lockByIdentifier(warehouse.location);
-      warehousesInTheSameLocation = warehouseStore.countByLocation(warehouse.location);
-      // Repeat business logic in slow path
-      canCreateWarehouseAtLocation(warehousesInTheSameLocation, location);
-    } catch (PessimisticLockException e) {
-      // TODO srcmaxim: I didn't test this part!
-      // We need proper test setup for DB invariants test with load testing.
-      registry.counter("create_warehouse_pessimistic_lock_fail").count();
-      throw new WebApplicationException("Can not create Warehouse; Resource conflict; Try again", 409);
-    }
+    return location;
+  }
+
+  static WebApplicationException businessUnitCodeExists(Warehouse warehouse) {
+    return new WebApplicationException("Can not create Warehouse; Warehouse with [businessUnitCode=%s] already exists".formatted(warehouse.businessUnitCode), 400);
+  }
+
+  /**
+   * @param capacityAtLocation total capacity of the active warehouses at the Location
+   */
+  static void checkCapacity(Warehouse warehouse, Location location, long capacityAtLocation) {
     // Capacity and Stock Validation
     // Validate the warehouse capacity, ensuring it does not exceed the maximum capacity associated with the location and that it can handle the stock informed.
+    // Max capacity limits the total capacity of the warehouses at the Location, not each one of them.
     // TODO srcmaxim: Found a bug in SQL!
     // As you see max capacity at Location of Warehouse is less than in Warehouse.
     // INSERT INTO warehouse(id, businessUnitCode, location, capacity, ...)
     // VALUES (1, 'MWH.001', 'ZWOLLE-001', 100, ...);
     // INSERT INTO location(id, identification, maxNumberOfWarehouses, maxCapacity)
     // VALUES (1, 'ZWOLLE-001', 1, 40);
-    if (warehouse.capacity > location.maxCapacity()) {
+    long capacity = capacityAtLocation + warehouse.capacity;
+    if (capacity > location.maxCapacity()) {
       throw new WebApplicationException("Can not create Warehouse; Capacity of warehouses exceeds max capacity at Location [capacity=%s, maxCapacity=%s]"
-          .formatted(warehouse.capacity, location.maxCapacity()), 400);
+          .formatted(capacity, location.maxCapacity()), 400);
     }
+  }
+
+  static void checkStock(Warehouse warehouse) {
     // TODO srcmaxim: How to check that it can handle the stock informed?
-    if (warehouse.stock <= 0) {
+    if (warehouse.stock == null || warehouse.stock <= 0) {
       throw new WebApplicationException("Can not create Warehouse; Stock of Warehouse is less that 0 [stock=%s]"
           .formatted(warehouse.stock), 400);
     }
-    warehouse.createdAt = LocalDateTime.now();
-    warehouseStore.create(warehouse);
   }
 
-  private static void canCreateWarehouseAtLocation(long warehousesInTheSameLocation, Location location) {
-    if (warehousesInTheSameLocation + 1 > location.maxNumberOfWarehouses()) {
-      throw new WebApplicationException("Can not create Warehouse; Number of warehouses at Location reached maximum [location=%s, maxNumberOfWarehouses=%s]"
-          .formatted(location.identification(), location.maxNumberOfWarehouses()), 400);
+  private void createWithinLimits(Warehouse warehouse) {
+    // Stock is the only check that doesn't need the database
+    checkStock(warehouse);
+    warehouse.createdAt = LocalDateTime.now();
+    for (int attempt = 0; attempt <= maxRetries; attempt++) {
+      var result = warehouseStore.tryCreateWithinLimits(warehouse);
+      var location = result.location();
+      switch (result.outcome()) {
+        case CREATED -> {
+          return;
+        }
+        case BUSINESS_UNIT_CODE_EXISTS -> throw businessUnitCodeExists(warehouse);
+        case LOCATION_NOT_FOUND ->
+            throw new WebApplicationException("Can not create Warehouse; Location for warehouse [location=%s] doesn't exist".formatted(warehouse.location), 400);
+        case MAX_NUMBER_OF_WAREHOUSES_REACHED -> throw LocationAdmissionStrategy.numberOfWarehousesReached(location);
+        case MAX_CAPACITY_EXCEEDED -> checkCapacity(warehouse, location, result.aggregate().capacity());
+        case CONFLICT -> {
+          // Concurrent creation committed after the statement snapshot, next attempt sees it
+        }
+      }
     }
+    throw new WebApplicationException("Can not create Warehouse; Resource conflict; Try again", 409);
   }
 }
@@ -50,7 +50,8 @@ public class ReplaceWarehouseUseCase implements ReplaceWarehouseOperation {
     // Warehouse Creation Feasibility
     // Check if a new warehouse can be created at the specified location or if the maximum number of warehouses has already been reached.
     // TODO srcmaxim: How to check if warehouse can be created at the specified location?
-    long warehousesInTheSameLocation = warehouseStore.countByLocation(newWarehouse.location);
+    var aggregate = warehouseStore.findAggregate(newWarehouse.location);
+    long warehousesInTheSameLocation = aggregate.warehouses();
     // TODO srcmaxim: We can't guarantee that new warehouses are not added as part of other transactions.
     // This is phantom read problem, it happens when you read data twice and new data appears.
     // We can fix it by using SERIALIZABLE transaction (TX will think as it's executes sequentially w/o affect of other TXs),
@@ -79,9 +80,12 @@ public class ReplaceWarehouseUseCase implements ReplaceWarehouseOperation {
     }
     // Capacity and Stock Validation
     // Validate the warehouse capacity, ensuring it does not exceed the maximum capacity associated with the location and that it can handle the stock informed.
-    if (newWarehouse.capacity > location.maxCapacity()) {
+    // The replaced warehouse leaves the total capacity when it is at the same Location.
+    long capacity = aggregate.capacity() + newWarehouse.capacity
+        - (newWarehouse.location.equals(oldWarehouse.location) ? oldWarehouse.capacity : 0);
+    if (capacity > location.maxCapacity()) {
       throw new WebApplicationException("Can not replace Warehouse; Capacity of warehouses exceeds max capacity at Location [capacity=%s, maxCapacity=%s]"
-          .formatted(newWarehouse.capacity, location.maxCapacity()), 400);
+          .formatted(capacity, location.maxCapacity()), 400);
     }
     // TODO srcmaxim: How to check that it can handle the stock informed?
 
@@ -99,9 +103,8 @@ public class ReplaceWarehouseUseCase implements ReplaceWarehouseOperation {
           .formatted(newWarehouse.stock, oldWarehouse.stock), 400);
     }
 
-    // TODO srcmaxim: What to do on warehouse replacement? Remove Warehouse or archive it?
-    warehouseStore.remove(oldWarehouse);
+    // Replaced in place: the new Warehouse takes over the row and moves the Location totals in the same statement
     newWarehouse.createdAt = LocalDateTime.now();
-    warehouseStore.create(newWarehouse);
+    warehouseStore.update(newWarehouse);
   }
 }
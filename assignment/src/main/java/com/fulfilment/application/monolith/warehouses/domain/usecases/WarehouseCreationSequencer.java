@@ -0,0 +1,273 @@
+package com.fulfilment.application.monolith.warehouses.domain.usecases;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.locations.domain.models.LocationIdentifier;
+import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationAdmissionStrategy;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group commit of Warehouse creations: creations at the same Location are queued and admitted in batches.
+ * <p>
+ * A batch locks the Location row once, reads the Location aggregate and the taken business unit codes once,
+ * checks every creation against the Location limits in memory in arrival order and inserts the admitted ones
+ * in a single transaction. Every caller gets its own result: created, or the 400 of its failed check.
+ * Batches of the same Location run one after another, batches of different Locations run in parallel.
+ * <p>
+ * Creations are committed in the batch transaction, not in the caller's one.
+ * A business unit code taken by a concurrent batch of another Location fails only the creation that uses it:
+ * the batch is retried and sees the committed code. A Location row locked by another instance or admission strategy
+ * is waited for, the batch doesn't fail on it.
+ */
+@ApplicationScoped
+public class WarehouseCreationSequencer {
+
+  private static final Logger LOGGER = Logger.getLogger(WarehouseCreationSequencer.class.getName());
+  private static final String UNIQUE_VIOLATION = "23505";
+
+  @Inject
+  private WarehouseStore warehouseStore;
+  @Inject
+  private LocationResolverOperation locationResolverOperation;
+  @Inject
+  private MeterRegistry registry;
+
+  @ConfigProperty(name = "warehouse.group-commit.max-batch-size", defaultValue = "100")
+  int maxBatchSize;
+  @ConfigProperty(name = "warehouse.group-commit.parallelism", defaultValue = "4")
+  int parallelism;
+  @ConfigProperty(name = "warehouse.group-commit.timeout", defaultValue = "10s")
+  Duration timeout;
+  @ConfigProperty(name = "warehouse.location-admission.max-retries", defaultValue = "5")
+  int maxRetries;
+
+  // Keyed by identifiers of existing Locations only, so the number of queues is bounded by the Locations
+  private final ConcurrentHashMap<LocationIdentifier, LocationQueue> queues = new ConcurrentHashMap<>();
+  private ExecutorService executor;
+  private DistributionSummary batchSizeSummary;
+  private Timer batchTimer;
+
+  // Claimed once, either by the batch that takes the creation or by the caller that withdraws it on timeout
+  private record PendingCreation(Warehouse warehouse, CompletableFuture<Void> result, AtomicBoolean claimed) {
+  }
+
+  private static final class LocationQueue {
+    private final String location;
+    private final ConcurrentLinkedQueue<PendingCreation> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private LocationQueue(String location) {
+      this.location = location;
+    }
+  }
+
+  @PostConstruct
+  void init() {
+    var threadNumber = new AtomicInteger();
+    executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      var thread = new Thread(runnable, "warehouse-creation-sequencer-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    batchSizeSummary = DistributionSummary.builder("warehouse_group_commit_batch_size")
+        .description("Number of Warehouse creations admitted per Location batch")
+        .register(registry);
+    batchTimer = Timer.builder("warehouse_group_commit_time")
+        .description("Time taken to check and commit a batch of Warehouse creations")
+        .publishPercentiles(0.5, 0.99)
+        .register(registry);
+  }
+
+  @PreDestroy
+  void shutdown() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Queues the creation at its Location and waits for the batch that takes it.
+   *
+   * @param location existing Location of the Warehouse
+   * @param warehouse with business unit code, capacity and createdAt set
+   * @throws WebApplicationException 400 when a check fails,
+   *                                 503 when no batch took the creation in time, it is then withdrawn and never committed
+   */
+  public void create(Location location, Warehouse warehouse) {
+    var creation = new PendingCreation(warehouse, new CompletableFuture<>(), new AtomicBoolean());
+    var queue = queues.computeIfAbsent(LocationIdentifier.parse(location.identification()),
+        identifier -> new LocationQueue(location.identification()));
+    queue.pending.add(creation);
+    scheduleDrain(queue);
+    try {
+      try {
+        creation.result().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        if (creation.claimed().compareAndSet(false, true)) {
+          queue.pending.remove(creation);
+          throw new WebApplicationException("Can not create Warehouse; Timed out waiting for Location [location=%s]"
+              .formatted(location.identification()), 503);
+        }
+        // A running batch took the creation, its transaction decides within the transaction timeout
+        creation.result().get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WebApplicationException("Interrupted while creating Warehouse", 503);
+    }
+  }
+
+  private void scheduleDrain(LocationQueue queue) {
+    if (!queue.draining.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(() -> drain(queue));
+    } catch (RejectedExecutionException e) {
+      queue.draining.set(false);
+      PendingCreation creation;
+      while ((creation = queue.pending.poll()) != null) {
+        creation.result().completeExceptionally(new WebApplicationException("Can not create Warehouse; Shutting down", 503));
+      }
+    }
+  }
+
+  private void drain(LocationQueue queue) {
+    try {
+      List<PendingCreation> batch;
+      while (!(batch = poll(queue)).isEmpty()) {
+        commit(queue.location, batch);
+      }
+    } finally {
+      queue.draining.set(false);
+      // A creation queued after the last poll, but before the flag was reset, would wait forever
+      if (!queue.pending.isEmpty()) {
+        scheduleDrain(queue);
+      }
+    }
+  }
+
+  private List<PendingCreation> poll(LocationQueue queue) {
+    var batch = new ArrayList<PendingCreation>();
+    PendingCreation creation;
+    while (batch.size() < maxBatchSize && (creation = queue.pending.poll()) != null) {
+      // Withdrawn by its caller
+      if (creation.claimed().compareAndSet(false, true)) {
+        batch.add(creation);
+      }
+    }
+    return batch;
+  }
+
+  private void commit(String identifier, List<PendingCreation> batch) {
+    var admitted = new ArrayList<PendingCreation>(batch.size());
+    var rejected = new LinkedHashMap<PendingCreation, WebApplicationException>();
+    for (int attempt = 0; ; attempt++) {
+      try {
+        commitAttempt(identifier, batch, admitted, rejected);
+        break;
+      } catch (RuntimeException e) {
+        if (attempt < maxRetries && isUniqueViolation(e)) {
+          // A batch of another Location committed one of the business unit codes, the next attempt reads it
+          continue;
+        }
+        if (!(e instanceof WebApplicationException)) {
+          LOGGER.errorv(e, "Failed to commit Warehouse creations at Location {0}", identifier);
+        }
+        batch.forEach(creation -> creation.result().completeExceptionally(e));
+        return;
+      }
+    }
+    batchSizeSummary.record(admitted.size());
+    rejected.forEach((creation, e) -> creation.result().completeExceptionally(e));
+    admitted.forEach(creation -> creation.result().complete(null));
+  }
+
+  private void commitAttempt(String identifier, List<PendingCreation> batch, List<PendingCreation> admitted,
+                             Map<PendingCreation, WebApplicationException> rejected) {
+    batchTimer.record(() -> QuarkusTransaction.requiringNew().run(() -> {
+      admitted.clear();
+      rejected.clear();
+      // Other application instances and the row lock admission take the same lock, creations queued here
+      // are serialized already, so the batch waits for it instead of failing all of them
+      var location = locationResolverOperation.waitForLockByIdentifier(identifier);
+      if (location == null) {
+        throw new WebApplicationException("Can not create Warehouse; Location for warehouse [location=%s] doesn't exist"
+            .formatted(identifier), 400);
+      }
+      var aggregate = warehouseStore.findAggregate(identifier);
+      long warehouses = aggregate.warehouses();
+      long capacity = aggregate.capacity();
+      var businessUnitCodes = new HashSet<>(warehouseStore.findActiveBusinessUnitCodes(
+          batch.stream().map(creation -> creation.warehouse().businessUnitCode).toList()));
+      for (var creation : batch) {
+        var warehouse = creation.warehouse();
+        try {
+          if (businessUnitCodes.contains(warehouse.businessUnitCode)) {
+            throw CreateWarehouseUseCase.businessUnitCodeExists(warehouse);
+          }
+          LocationAdmissionStrategy.checkNumberOfWarehouses(warehouses, location);
+          CreateWarehouseUseCase.checkCapacity(warehouse, location, capacity);
+          CreateWarehouseUseCase.checkStock(warehouse);
+        } catch (WebApplicationException e) {
+          rejected.put(creation, e);
+          continue;
+        }
+        warehouseStore.create(warehouse);
+        businessUnitCodes.add(warehouse.businessUnitCode);
+        warehouses++;
+        capacity += warehouse.capacity;
+        admitted.add(creation);
+      }
+    }));
+  }
+
+  private static boolean isUniqueViolation(Throwable e) {
+    for (var cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException sqlException && UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+        return true;
+      }
+      for (var suppressed : cause.getSuppressed()) {
+        if (isUniqueViolation(suppressed)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,58 @@
+package com.fulfilment.application.monolith.locations.adapters.database;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+public class LocationRegistryTest {
+
+  private static final String LOCATION = "REGISTRY-001";
+
+  @Inject
+  LocationRegistry locationRegistry;
+  @Inject
+  EntityManagerFactory entityManagerFactory;
+
+  @AfterEach
+  public void tearDown() {
+    QuarkusTransaction.requiringNew().run(() -> DbLocation.delete("identification", LOCATION));
+    locationRegistry.refresh();
+  }
+
+  @Test
+  public void testResolve_WhenKnownOrUnknown_ThenNoQuery() {
+    var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    long statements = statistics.getPrepareStatementCount();
+
+    var known = locationRegistry.resolveByIdentifier("ZWOLLE-001");
+    var unknown = locationRegistry.resolveByIdentifier("UKRAINE-001");
+
+    assertThat(known).isEqualTo(new Location("ZWOLLE-001", 1, 100));
+    assertThat(unknown).isNull();
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+  }
+
+  @Test
+  public void testResolve_WhenLocationWritten_ThenSeenAfterRefresh() {
+    QuarkusTransaction.requiringNew().run(() -> {
+      var dbLocation = new DbLocation();
+      dbLocation.identification = LOCATION;
+      dbLocation.maxNumberOfWarehouses = 2;
+      dbLocation.maxCapacity = 20;
+      dbLocation.persist();
+    });
+    assertThat(locationRegistry.resolveByIdentifier(LOCATION)).isNull();
+
+    locationRegistry.refresh();
+
+    assertThat(locationRegistry.resolveByIdentifier(LOCATION)).isEqualTo(new Location(LOCATION, 2, 20));
+  }
+}
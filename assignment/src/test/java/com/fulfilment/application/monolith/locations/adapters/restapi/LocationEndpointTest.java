@@ -4,8 +4,14 @@ import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import org.junit.jupiter.api.Test;
 
+import java.util.Collections;
+import java.util.List;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
 
 @QuarkusTest
 public class LocationEndpointTest {
@@ -49,4 +55,95 @@ public class LocationEndpointTest {
         .contentType(ContentType.JSON)
         .body(containsString("404"), containsString("Location not found"));
   }
+
+  @Test
+  public void testResolveLocations() {
+    final String path = "location/resolve";
+
+    // Found, invalid and unknown identifiers in one response, duplicates resolved once:
+    given()
+        .contentType(ContentType.JSON)
+        .body(List.of("ZWOLLE-001", "00000-AAA", "UKRAINE-001", "AMSTERDAM-001", "ZWOLLE-001"))
+        .when()
+        .post(path)
+        .then()
+        .statusCode(200)
+        .contentType(ContentType.JSON)
+        .body("locations.identification", contains("ZWOLLE-001", "AMSTERDAM-001"))
+        .body("locations[0].maxCapacity", is(100))
+        .body("invalid", contains("00000-AAA"))
+        .body("unknown", contains("UKRAINE-001"));
+
+    given()
+        .contentType(ContentType.JSON)
+        .body(List.of())
+        .when()
+        .post(path)
+        .then()
+        .statusCode(400)
+        .body(containsString("No identifiers"));
+
+    // More identifiers than one request accepts:
+    given()
+        .contentType(ContentType.JSON)
+        .body(Collections.nCopies(1001, "ZWOLLE-001"))
+        .when()
+        .post(path)
+        .then()
+        .statusCode(400)
+        .body(containsString("Too many identifiers"));
+  }
+
+  @Test
+  public void testSearchLocations() {
+    final String path = "location";
+
+    // All Locations of a place:
+    given()
+        .when()
+        .get(path + "?prefix=AMS")
+        .then()
+        .statusCode(200)
+        .contentType(ContentType.JSON)
+        .body("identification", contains("AMSTERDAM-001", "AMSTERDAM-002"));
+
+    // Page by page, after the last identifier of the previous page:
+    given()
+        .when()
+        .get(path + "?prefix=ZWOLLE&limit=1")
+        .then()
+        .statusCode(200)
+        .body("identification", contains("ZWOLLE-001"));
+    given()
+        .when()
+        .get(path + "?prefix=ZWOLLE&limit=1&after=ZWOLLE-001")
+        .then()
+        .statusCode(200)
+        .body("identification", contains("ZWOLLE-002"));
+
+    // Capacity and number of warehouses filters:
+    given()
+        .when()
+        .get(path + "?prefix=AMSTERDAM&maxCapacity=80&minWarehouses=3")
+        .then()
+        .statusCode(200)
+        .body("identification", contains("AMSTERDAM-002"));
+    given()
+        .when()
+        .get(path + "?prefix=UKRAINE")
+        .then()
+        .statusCode(200)
+        .body("$", empty());
+
+    given()
+        .when()
+        .get(path + "?limit=0")
+        .then()
+        .statusCode(422);
+    given()
+        .when()
+        .get(path + "?minCapacity=100&maxCapacity=10")
+        .then()
+        .statusCode(422);
+  }
 }
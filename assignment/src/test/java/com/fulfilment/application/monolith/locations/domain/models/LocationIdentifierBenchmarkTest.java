@@ -0,0 +1,75 @@
+package com.fulfilment.application.monolith.locations.domain.models;
+
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Validates a mix of valid and invalid identifiers with the regex predicate and with {@link LocationIdentifier},
+ * and reports per path: time and bytes allocated per validation. Only the allocations are asserted, the
+ * timings depend on the machine running the build and are logged.
+ */
+class LocationIdentifierBenchmarkTest {
+
+  private static final Logger LOGGER = Logger.getLogger(LocationIdentifierBenchmarkTest.class.getName());
+  private static final Predicate<String> IDENTIFICATION_PATTERN =
+      Pattern.compile("^[A-Z]{3,12}-[0-9]{3}$").asPredicate();
+  private static final String[] IDENTIFIERS = {
+      "ZWOLLE-001", "AMSTERDAM-001", "AMSTERDAM-002", "TILBURG-001", "HELMOND-001", "EINDHOVEN-001",
+      "VETSBY-001", "UKRAINE-001", "00000-AAA", "ZWOLLE-0001", "zwolle-001", "AAAAAAAAAAAAA-000",
+  };
+  private static final int WARMUPS = 5;
+  private static final int RUNS = 5;
+  private static final int VALIDATIONS = 1_000_000;
+
+  private record Measurement(double nanos, double bytes) {
+  }
+
+  @Test
+  public void testValidation_WhenParserInsteadOfRegex_ThenWithoutAllocation() {
+    var regex = measure("regex", IDENTIFICATION_PATTERN);
+    var parser = measure("parser", LocationIdentifier::isValid);
+    var parse = measure("parser, identifier created", identifier -> LocationIdentifier.parse(identifier) != null);
+
+    assertThat(parser.bytes()).isLessThan(1);
+    assertThat(parse.bytes()).isLessThan(regex.bytes());
+    LOGGER.infov("parser: {0}x the time of regex", "%.2f".formatted(parser.nanos() / regex.nanos()));
+  }
+
+  private static Measurement measure(String name, Predicate<String> validation) {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < WARMUPS; i++) {
+      validate(validation);
+    }
+    long bytes = 0;
+    long nanos = 0;
+    for (int i = 0; i < RUNS; i++) {
+      long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+      long startedAt = System.nanoTime();
+      int valid = validate(validation);
+      nanos += System.nanoTime() - startedAt;
+      bytes += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+      assertThat(valid).isEqualTo(VALIDATIONS / IDENTIFIERS.length * 8);
+    }
+    var measurement = new Measurement((double) nanos / RUNS / VALIDATIONS, (double) bytes / RUNS / VALIDATIONS);
+    LOGGER.infov("{0}: {1} ns, {2} bytes allocated per validation",
+        name, "%.1f".formatted(measurement.nanos()), "%.2f".formatted(measurement.bytes()));
+    return measurement;
+  }
+
+  private static int validate(Predicate<String> validation) {
+    int valid = 0;
+    for (int i = 0; i < VALIDATIONS / IDENTIFIERS.length * IDENTIFIERS.length; i++) {
+      if (validation.test(IDENTIFIERS[i % IDENTIFIERS.length])) {
+        valid++;
+      }
+    }
+    return valid;
+  }
+}
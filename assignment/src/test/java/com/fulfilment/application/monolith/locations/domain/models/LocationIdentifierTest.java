@@ -0,0 +1,47 @@
+package com.fulfilment.application.monolith.locations.domain.models;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocationIdentifierTest {
+
+  private static final Pattern IDENTIFICATION_PATTERN = Pattern.compile("^[A-Z]{3,12}-[0-9]{3}$");
+
+  @ParameterizedTest
+  @CsvSource({
+      "ZWOLLE-001", "AAA-000", "AAAAAAAAAAAA-000", "ZZZZZZZZZZZZ-999",
+      "AAAAAAAAAAAAA-000", "AAAAAAAAAAAA-0000", "123-AAA", "123-000", "AAA-AAA", "111-111", "AAA-00", "AA-000",
+      "zwolle-001", "ZWOLLE_001", "ZWOLLE-0O1", "ZWOLLE--001", "-001", "''",
+  })
+  void isValid_ThenSameAsRegex(String identifier) {
+    assertThat(LocationIdentifier.isValid(identifier)).isEqualTo(IDENTIFICATION_PATTERN.matcher(identifier).matches());
+    assertThat(LocationIdentifier.parse(identifier) != null).isEqualTo(LocationIdentifier.isValid(identifier));
+  }
+
+  @ParameterizedTest
+  @CsvSource({"ZWOLLE-001", "AAA-000", "ZZZZZZZZZZZZ-999", "AMSTERDAM-042"})
+  void parse_WhenValid_ThenToStringRoundTrips(String identifier) {
+    assertThat(LocationIdentifier.parse(identifier)).hasToString(identifier)
+        .isEqualTo(LocationIdentifier.parse(new StringBuilder(identifier)));
+  }
+
+  @Test
+  void parse_WhenNull_ThenNull() {
+    assertThat(LocationIdentifier.parse(null)).isNull();
+  }
+
+  @Test
+  void compareTo_ThenSameOrderAsStrings() {
+    var identifiers = List.of("AMSTERDAM-002", "AMS-001", "AMSTERDAM-001", "ZZZ-000", "AAA-999", "AMSA-001", "AMS-010");
+
+    var byIdentifier = identifiers.stream().map(LocationIdentifier::parse).sorted().map(Object::toString).toList();
+
+    assertThat(byIdentifier).isEqualTo(identifiers.stream().sorted().toList());
+  }
+}
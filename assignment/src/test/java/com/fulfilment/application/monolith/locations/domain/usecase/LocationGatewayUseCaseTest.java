@@ -1,5 +1,6 @@
 package com.fulfilment.application.monolith.locations.domain.usecase;
 
+import com.fulfilment.application.monolith.locations.adapters.database.LocationRegistry;
 import com.fulfilment.application.monolith.locations.adapters.database.LocationRepository;
 import com.fulfilment.application.monolith.locations.domain.models.Location;
 import io.quarkus.test.InjectMock;
@@ -18,6 +19,9 @@ import static org.mockito.Mockito.when;
 @QuarkusTest
 class LocationGatewayUseCaseTest {
 
+  @InjectMock
+  private LocationRegistry locationRegistry;
+
   @InjectMock
   private LocationRepository locationRepository;
 
@@ -31,7 +35,7 @@ class LocationGatewayUseCaseTest {
   })
   void resolveByIdentifier_WhenIdentifierIsValid_ThenDoCall(String identifier) {
     var location = new Location("AAA-000", 1, 1);
-    when(locationRepository.resolveByIdentifier(any())).thenReturn(location);
+    when(locationRegistry.resolveByIdentifier(any())).thenReturn(location);
 
     var result = locationGatewayUseCase.resolveByIdentifier(identifier);
 
@@ -54,6 +58,6 @@ class LocationGatewayUseCaseTest {
         .isInstanceOf(WebApplicationException.class)
         .hasMessage("Location should be in form PLACE-number, example: 'ZWOLLE-001'");
 
-    verifyNoInteractions(locationRepository);
+    verifyNoInteractions(locationRegistry, locationRepository);
   }
 }
\ No newline at end of file
@@ -5,10 +5,14 @@ import io.restassured.http.ContentType;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.core.IsNot.not;
 
 @QuarkusTest
@@ -125,4 +129,115 @@ public class ProductEndpointTest {
         .contentType(ContentType.JSON)
         .body(containsString("TONSTAD"));
   }
+
+  @Test
+  public void testKeysetPagination_WhenPagesFollowEachOther_ThenListAllProductsOnce() {
+    final String path = "product";
+
+    given()
+        .when()
+        .queryParam("limit", 2)
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("name", contains("BESTÅ", "KALLAX"));
+
+    given()
+        .when()
+        .queryParam("limit", 2)
+        .queryParam("after", "KALLAX")
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("name", contains("TONSTAD"));
+
+    given()
+        .when()
+        .queryParam("limit", 2)
+        .queryParam("after", "TONSTAD")
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("$", empty());
+
+    given()
+        .when()
+        .queryParam("limit", 0)
+        .get(path)
+        .then()
+        .statusCode(422)
+        .body(containsString("Limit must be between 1 and 1000."));
+  }
+
+  @Test
+  public void testStream_ThenListAllProductsSortedByName() {
+    given()
+        .when()
+        .get("product/stream")
+        .then()
+        .statusCode(200)
+        .body("name", contains("BESTÅ", "KALLAX", "TONSTAD"));
+  }
+
+  @Test
+  public void testConditionalRequests_WhenETagMatches_ThenSkipBodyOrRejectStaleUpdate() {
+    final String path = "product/2";
+    var etag = given()
+        .when()
+        .get(path)
+        .then()
+        .statusCode(200)
+        .extract()
+        .header("ETag");
+    assertThat(etag).isNotBlank();
+
+    // Not modified since the last GET:
+    given()
+        .when()
+        .header("If-None-Match", etag)
+        .get(path)
+        .then()
+        .statusCode(304)
+        .body(is(""));
+
+    // Update based on a stale version is rejected:
+    given()
+        .when()
+        .header("If-Match", "\"100500\"")
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "KALLAX", "stock", 100))
+        .put(path)
+        .then()
+        .statusCode(412);
+
+    // Update based on the current version:
+    var newEtag = given()
+        .when()
+        .header("If-Match", etag)
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "KALLAX", "stock", 100))
+        .put(path)
+        .then()
+        .statusCode(200)
+        .extract()
+        .header("ETag");
+    assertThat(newEtag).isNotEqualTo(etag);
+
+    given()
+        .when()
+        .header("If-None-Match", etag)
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("stock", is(100));
+
+    // Restore KALLAX to the initial state
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "KALLAX", "stock", 5))
+        .put(path)
+        .then()
+        .statusCode(200);
+  }
 }
@@ -0,0 +1,183 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class LegacyStoreCallGuardTest {
+
+  private final LegacyStoreManagerGateway gateway = mock(LegacyStoreManagerGateway.class);
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private LegacyStoreCallGuard guard;
+
+  @BeforeEach
+  void setUp() {
+    guard = new LegacyStoreCallGuard();
+    guard.legacyStoreManagerGateway = gateway;
+    guard.registry = registry;
+    guard.maxConcurrentCalls = 2;
+    guard.queueSize = 1;
+    guard.timeout = Duration.ofMillis(300);
+    guard.requestVolume = 4;
+    guard.failureRatio = 0.5;
+    guard.breakerDelay = Duration.ofMillis(200);
+    guard.hedgeEnabled = true;
+    guard.hedgeDelay = Duration.ofMillis(50);
+    guard.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    guard.shutdown();
+  }
+
+  @Test
+  void call_WhenLegacySystemIsSlow_ThenTimeout() {
+    doAnswer(invocation -> {
+      Thread.sleep(5_000);
+      return null;
+    }).when(gateway).createStoreOnLegacySystem(any());
+
+    assertThatThrownBy(() -> guard.createStoreOnLegacySystem(store(1L, "TONSTAD")))
+        .isInstanceOf(WebApplicationException.class)
+        .satisfies(e -> assertThat(((WebApplicationException) e).getResponse().getStatus()).isEqualTo(504));
+    assertThat(registry.counter("legacy_store_call_timeouts").count()).isEqualTo(1);
+  }
+
+  @Test
+  void call_WhenFailureRatioReached_ThenFailFastUntilTrialCallSucceeds() throws Exception {
+    doThrow(new WebApplicationException("legacy down", 500)).when(gateway).createStoreOnLegacySystem(any());
+    for (int i = 0; i < 4; i++) {
+      assertThatThrownBy(() -> guard.createStoreOnLegacySystem(store(1L, "TONSTAD"))).hasMessage("legacy down");
+    }
+
+    // Breaker is open, legacy system is not called
+    assertThatThrownBy(() -> guard.createStoreOnLegacySystem(store(1L, "TONSTAD")))
+        .hasMessage("Legacy Store system circuit breaker is open");
+    assertThat(guard.state()).isEqualTo(LegacyStoreCallGuard.State.OPEN);
+    verify(gateway, times(4)).createStoreOnLegacySystem(any());
+
+    // After the delay one trial call closes the breaker
+    TimeUnit.MILLISECONDS.sleep(250);
+    doAnswer(invocation -> null).when(gateway).createStoreOnLegacySystem(any());
+    guard.createStoreOnLegacySystem(store(1L, "TONSTAD"));
+    assertThat(guard.state()).isEqualTo(LegacyStoreCallGuard.State.CLOSED);
+  }
+
+  @Test
+  void call_WhenTimedOutAttemptStillRunning_ThenNextCallOfStoreRejected() throws Exception {
+    guard.hedgeEnabled = false;
+    var release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      while (invocation.<Store>getArgument(0).id == 1L) {
+        try {
+          release.await();
+          break;
+        } catch (InterruptedException e) {
+          // Request already sent, cancelling the attempt doesn't stop it
+        }
+      }
+      return null;
+    }).when(gateway).updateStoreOnLegacySystem(any());
+
+    assertThatThrownBy(() -> guard.updateStoreOnLegacySystem(store(1L, "TONSTAD")))
+        .satisfies(e -> assertThat(((WebApplicationException) e).getResponse().getStatus()).isEqualTo(504));
+
+    // Retry must not overtake the timed out request, other Stores are not affected
+    assertThatThrownBy(() -> guard.updateStoreOnLegacySystem(store(1L, "TONSTAD")))
+        .hasMessage("Earlier legacy Store system call of the Store is still running");
+    assertThat(registry.counter("legacy_store_calls_rejected", "reason", "unfinished_attempt").count()).isEqualTo(1);
+    guard.updateStoreOnLegacySystem(store(2L, "KALLAX"));
+
+    release.countDown();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    while (true) {
+      try {
+        guard.updateStoreOnLegacySystem(store(1L, "TONSTAD"));
+        break;
+      } catch (WebApplicationException e) {
+        if (System.nanoTime() > deadline) {
+          throw e;
+        }
+        TimeUnit.MILLISECONDS.sleep(10);
+      }
+    }
+    verify(gateway, times(3)).updateStoreOnLegacySystem(any());
+  }
+
+  @Test
+  void update_WhenFirstAttemptIsSlow_ThenHedgedAttemptWins() {
+    var calls = new AtomicInteger();
+    doAnswer(invocation -> {
+      if (calls.incrementAndGet() == 1) {
+        Thread.sleep(5_000);
+      }
+      return null;
+    }).when(gateway).updateStoreOnLegacySystem(any());
+
+    guard.updateStoreOnLegacySystem(store(2L, "KALLAX"));
+
+    assertThat(calls).hasValue(2);
+    assertThat(registry.counter("legacy_store_hedged_calls").count()).isEqualTo(1);
+  }
+
+  @Test
+  void create_WhenFirstAttemptIsSlow_ThenDoNotHedge() {
+    doAnswer(invocation -> {
+      Thread.sleep(100);
+      return null;
+    }).when(gateway).createStoreOnLegacySystem(any());
+
+    guard.createStoreOnLegacySystem(store(2L, "KALLAX"));
+
+    verify(gateway, times(1)).createStoreOnLegacySystem(any());
+  }
+
+  @Test
+  void call_WhenBulkheadIsFull_ThenReject() throws Exception {
+    guard.hedgeEnabled = false;
+    var release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      release.await();
+      return null;
+    }).when(gateway).updateStoreOnLegacySystem(any());
+    // 2 running calls + 1 queued call occupy the bulkhead
+    var callers = new Thread[3];
+    for (int i = 0; i < callers.length; i++) {
+      callers[i] = new Thread(() -> guard.updateStoreOnLegacySystem(store(3L, "BESTÅ")));
+      callers[i].start();
+    }
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    assertThatThrownBy(() -> guard.updateStoreOnLegacySystem(store(3L, "BESTÅ")))
+        .hasMessage("Legacy Store system bulkhead is full");
+    assertThat(registry.counter("legacy_store_calls_rejected", "reason", "bulkhead").count()).isEqualTo(1);
+
+    release.countDown();
+    for (var caller : callers) {
+      caller.join();
+    }
+  }
+
+  private static Store store(long id, String name) {
+    var store = new Store(name);
+    store.id = id;
+    return store;
+  }
+}
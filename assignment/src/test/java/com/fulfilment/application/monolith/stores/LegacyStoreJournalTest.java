@@ -0,0 +1,130 @@
+package com.fulfilment.application.monolith.stores;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LegacyStoreJournalTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void appendAndSync_WhenManyConcurrentWriters_ThenRecordsShareForceCalls() throws Exception {
+    int writers = 16;
+    int recordsPerWriter = 500;
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    try (var journal = new LegacyStoreJournal(directory, 1 << 20, Duration.ofMillis(5), 64, Integer.MAX_VALUE)) {
+      for (int writer = 0; writer < writers; writer++) {
+        int storeId = writer;
+        executor.submit(() -> {
+          for (int i = 0; i < recordsPerWriter; i++) {
+            journal.appendAndSync(new LegacyStoreJournal.Entry(StoreOutboxEvent.Type.UPDATED, storeId, "TONSTAD", i));
+          }
+        });
+      }
+      executor.shutdown();
+      assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+      assertThat(journal.forceCount()).isLessThan(writers * recordsPerWriter / 4);
+    }
+
+    var entries = replayAll();
+    assertThat(entries).hasSize(writers * recordsPerWriter);
+    // Per writer order is preserved
+    for (int writer = 0; writer < writers; writer++) {
+      long storeId = writer;
+      assertThat(entries.stream().filter(entry -> entry.storeId() == storeId).mapToInt(LegacyStoreJournal.Entry::quantityProductsInStock))
+          .isSorted()
+          .hasSize(recordsPerWriter);
+    }
+  }
+
+  @Test
+  void append_WhenSegmentIsFull_ThenRollToNextSegment() throws Exception {
+    try (var journal = new LegacyStoreJournal(directory, 256, Duration.ofMillis(1), 1, Integer.MAX_VALUE)) {
+      for (int i = 0; i < 20; i++) {
+        journal.appendAndSync(new LegacyStoreJournal.Entry(StoreOutboxEvent.Type.CREATED, i, "KALLAX", i));
+      }
+    }
+
+    assertThat(segments()).hasSizeGreaterThan(1);
+    assertThat(replayAll())
+        .extracting(LegacyStoreJournal.Entry::storeId)
+        .containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L);
+  }
+
+  @Test
+  void append_WhenJournalReopened_ThenStartNewSegment() {
+    try (var journal = new LegacyStoreJournal(directory, 1024, Duration.ofMillis(1), 1, Integer.MAX_VALUE)) {
+      journal.appendAndSync(new LegacyStoreJournal.Entry(StoreOutboxEvent.Type.CREATED, 1, "BESTÅ", 3));
+    }
+    try (var journal = new LegacyStoreJournal(directory, 1024, Duration.ofMillis(1), 1, Integer.MAX_VALUE)) {
+      journal.appendAndSync(new LegacyStoreJournal.Entry(StoreOutboxEvent.Type.UPDATED, 1, "BESTÅ", 4));
+    }
+
+    assertThat(segments()).hasSize(2);
+    assertThat(replayAll()).containsExactly(
+        new LegacyStoreJournal.Entry(StoreOutboxEvent.Type.CREATED, 1, "BESTÅ", 3),
+        new LegacyStoreJournal.Entry(StoreOutboxEvent.Type.UPDATED, 1, "BESTÅ", 4));
+  }
+
+  @Test
+  void open_WhenMoreSegmentsThanKept_ThenDeleteOldestSegments() {
+    for (int start = 1; start <= 4; start++) {
+      try (var journal = new LegacyStoreJournal(directory, 1024, Duration.ofMillis(1), 1, 2)) {
+        journal.appendAndSync(new LegacyStoreJournal.Entry(StoreOutboxEvent.Type.UPDATED, 1, "BESTÅ", start));
+      }
+    }
+
+    assertThat(segments()).hasSize(2);
+    assertThat(replayAll()).extracting(LegacyStoreJournal.Entry::quantityProductsInStock).containsExactly(3, 4);
+  }
+
+  @Test
+  void replay_WhenRecordIsCorrupted_ThenThrow() throws Exception {
+    Path segment;
+    try (var journal = new LegacyStoreJournal(directory, 1024, Duration.ofMillis(1), 1, Integer.MAX_VALUE)) {
+      journal.appendAndSync(new LegacyStoreJournal.Entry(StoreOutboxEvent.Type.CREATED, 1, "TONSTAD", 10));
+      segment = journal.currentSegment();
+    }
+    try (var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      // Flip one byte of the Store name
+      channel.write(ByteBuffer.wrap(new byte[] {'X'}), LegacyStoreJournal.RECORD_HEADER_SIZE + LegacyStoreJournal.PAYLOAD_FIXED_SIZE);
+    }
+
+    assertThatThrownBy(() -> LegacyStoreJournalReader.replay(segment, entry -> {
+    }))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("Corrupted legacy Store journal record");
+  }
+
+  private List<LegacyStoreJournal.Entry> replayAll() {
+    var entries = new ArrayList<LegacyStoreJournal.Entry>();
+    segments().forEach(segment -> LegacyStoreJournalReader.replay(segment, entries::add));
+    return entries;
+  }
+
+  private List<Path> segments() {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.sorted().toList();
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -1,22 +1,31 @@
 package com.fulfilment.application.monolith.stores;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.test.junit.QuarkusMock;
 import io.quarkus.test.junit.QuarkusTest;
-import io.restassured.common.mapper.TypeRef;
 import io.restassured.http.ContentType;
 import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
 import jakarta.ws.rs.WebApplicationException;
 import org.junit.jupiter.api.Test;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.containsString;
-import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.core.IsNot.not;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -27,6 +36,10 @@ public class StoreEndpointTest {
 
   @Inject
   private LegacyStoreManagerGateway legacyStoreManagerGateway;
+  @Inject
+  private StoreStockRepository storeStockRepository;
+  @Inject
+  private EntityManager entityManager;
 
   @Test
   public void testCrudProduct() {
@@ -149,24 +162,25 @@ public class StoreEndpointTest {
   }
 
   /**
-   * Messages to legacy system could be delivered once or never "at most once" guarantee.
-   * Here we test if message is not delivered to legacy system.
+   * Messages to legacy system are delivered "at least once" through the Store outbox.
+   * Here we test that failed deliveries don't fail the request and are retried until legacy system accepts them.
    * New system should save state in any case.
    */
   @Test
-  public void testAtMostOnceRequestDelivery_WhenLegacySystemFailed_ThenStillSaveDataInNewAppDb() {
-    // Given: Legacy system failed to store Store
+  public void testAtLeastOnceRequestDelivery_WhenLegacySystemFailed_ThenSaveDataAndRetryDelivery() {
+    // Given: Legacy system fails once for every Store change
     var legacyStore = mock(LegacyStoreManagerGateway.class);
-    doThrow(new WebApplicationException("test", 500)).when(legacyStore).createStoreOnLegacySystem(any());
-    doThrow(new WebApplicationException("test", 500)).when(legacyStore).updateStoreOnLegacySystem(any());
+    doThrow(new WebApplicationException("test", 500)).doNothing()
+        .when(legacyStore).createStoreOnLegacySystem(argThat(store -> "WORTUNG".equals(store.name)));
+    doThrow(new WebApplicationException("test", 500)).doNothing()
+        .when(legacyStore).updateStoreOnLegacySystem(argThat(store -> "WORTUNG_UPDATED".equals(store.name)));
     QuarkusMock.installMockForType(legacyStore, LegacyStoreManagerGateway.class);
 
     // This test designed to run continuously, so DB state is the same after running tests
     final String path = "store";
 
-
     // When: Create WORTUNG when legacy system failed:
-    given()
+    int id = given()
         .when()
         .contentType(ContentType.JSON)
         .body(Map.of(
@@ -175,34 +189,17 @@ public class StoreEndpointTest {
         ))
         .post(path)
         .then()
-        .statusCode(500)
-        .contentType(ContentType.JSON)
-        .body(containsString("test"));
-
-    // Then: List all, we should have WORTUNG even when call to remote service failed:
-    var response = given()
-        .when()
-        .get(path)
-        .then()
-        .statusCode(200)
+        .statusCode(201)
         .contentType(ContentType.JSON)
         .body(containsString("WORTUNG"))
         .extract()
-        .body()
-        .as(new TypeRef<List<Map<String, Object>>>() {
-        });
-
-    // Here we get ID for previous request that failed
-    int id = response.stream()
-        .filter(store -> store.get("name").equals("WORTUNG"))
-        .mapToInt(store -> (Integer) store.get("id"))
-        .findFirst()
-        .orElseThrow();
+        .path("id");
 
-    // Check WORTUNG ID
-    not(equalTo(-1)).matches(id);
+    // Then: Create is retried until legacy system accepts it
+    await().atMost(Duration.ofSeconds(10))
+        .untilAsserted(() -> verify(legacyStore, times(2)).createStoreOnLegacySystem(argThat(store -> store.id == id)));
 
-    // When: Update WORTUNG when legacy system failed:
+    // When: Update WORTUNG, legacy system accepts it on retry:
     given()
         .when()
         .contentType(ContentType.JSON)
@@ -212,9 +209,9 @@ public class StoreEndpointTest {
         ))
         .put(path + '/' + id)
         .then()
-        .statusCode(500)
+        .statusCode(200)
         .contentType(ContentType.JSON)
-        .body(containsString("test"));
+        .body(containsString("WORTUNG_UPDATED"));
 
     // Then: Get WORTUNG_UPDATED, we should have WORTUNG_UPDATED even when call to remote service failed:
     given()
@@ -225,7 +222,10 @@ public class StoreEndpointTest {
         .contentType(ContentType.JSON)
         .body(containsString("WORTUNG_UPDATED"), containsString("101010"));
 
-    // When: Update WORTUNG when legacy system failed:
+    await().atMost(Duration.ofSeconds(10))
+        .untilAsserted(() -> verify(legacyStore, times(2)).updateStoreOnLegacySystem(argThat(store -> store.id == id)));
+
+    // When: Patch WORTUNG back:
     given()
         .when()
         .contentType(ContentType.JSON)
@@ -233,29 +233,398 @@ public class StoreEndpointTest {
             "name", "WORTUNG",
             "quantityProductsInStock", 10
         ))
-        .put(path + '/' + id)
+        .patch(path + '/' + id)
         .then()
-        .statusCode(500)
+        .statusCode(200)
         .contentType(ContentType.JSON)
-        .body(containsString("test"));
+        .body(containsString("WORTUNG"));
+
+    // Then: Legacy system received the latest committed state
+    await().atMost(Duration.ofSeconds(10))
+        .untilAsserted(() -> verify(legacyStore, times(3)).updateStoreOnLegacySystem(argThat(store -> store.id == id)));
+    verify(legacyStore).updateStoreOnLegacySystem(argThat(store ->
+        store.id == id && store.name.equals("WORTUNG") && store.quantityProductsInStock == 10));
 
-    // Then: Get WORTUNG, we should have WORTUNG_UPDATED even when call to remote service failed:
+    // Delete WORTUNG:
     given()
         .when()
-        .get(path + '/' + id)
+        .delete(path + '/' + id)
+        .then()
+        .statusCode(204);
+  }
+
+  @Test
+  public void testCoalescedUpdates_WhenStoreUpdatedManyTimes_ThenLegacySystemGetsLatestUpdateOnly() {
+    // Given
+    var legacyStore = mock(LegacyStoreManagerGateway.class);
+    QuarkusMock.installMockForType(legacyStore, LegacyStoreManagerGateway.class);
+    final String path = "store";
+
+    // When: Update KALLAX many times within the coalesce window:
+    for (int quantity = 1; quantity <= 5; quantity++) {
+      given()
+          .when()
+          .contentType(ContentType.JSON)
+          .body(Map.of(
+              "name", "KALLAX",
+              "quantityProductsInStock", quantity
+          ))
+          .put(path + "/2")
+          .then()
+          .statusCode(200);
+    }
+
+    // Then: Legacy system gets only the latest committed state
+    await().atMost(Duration.ofSeconds(10))
+        .untilAsserted(() -> verify(legacyStore, times(1)).updateStoreOnLegacySystem(argThat(store -> store.id == 2)));
+    verify(legacyStore).updateStoreOnLegacySystem(argThat(store -> store.id == 2 && store.quantityProductsInStock == 5));
+
+    // Restore KALLAX to the initial state
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of(
+            "name", "KALLAX",
+            "quantityProductsInStock", 5
+        ))
+        .put(path + "/2")
+        .then()
+        .statusCode(200);
+  }
+
+  @Test
+  public void testCreate_WhenNameMissing_ThenRejected() {
+    // Stores are paginated by name, a Store without one could never be listed in pages
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("quantityProductsInStock", 1))
+        .post("store")
+        .then()
+        .statusCode(422)
+        .body(containsString("Store Name was not set on request."));
+  }
+
+  @Test
+  public void testDelivery_WhenLegacySystemSlow_ThenOutboxRowsNotLocked() throws Exception {
+    // Given: Legacy system takes a while to accept an update
+    var called = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var legacyStore = mock(LegacyStoreManagerGateway.class);
+    doAnswer(invocation -> {
+      called.countDown();
+      release.await(1, TimeUnit.SECONDS);
+      return null;
+    }).when(legacyStore).updateStoreOnLegacySystem(argThat(store -> store.id == 3));
+    QuarkusMock.installMockForType(legacyStore, LegacyStoreManagerGateway.class);
+    final String path = "store";
+
+    // When: Update BESTÅ
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "BESTÅ", "quantityProductsInStock", 3))
+        .put(path + "/3")
+        .then()
+        .statusCode(200);
+
+    // Then: While the legacy system is called, the outbox row can be locked by others
+    assertThat(called.await(10, TimeUnit.SECONDS)).isTrue();
+    var locked = QuarkusTransaction.requiringNew().call(() -> entityManager.createNativeQuery(
+            "select id from store_outbox where storeId = 3 for update nowait")
+        .getResultList());
+    assertThat(locked).hasSize(1);
+    release.countDown();
+
+    await().atMost(Duration.ofSeconds(10)).until(() -> QuarkusTransaction.requiringNew().call(() -> entityManager
+        .createNativeQuery("select id from store_outbox where storeId = 3").getResultList().isEmpty()));
+  }
+
+  @Test
+  public void testBulkCreate_WhenSomeLinesAreInvalid_ThenCreateValidStoresAndReportErrorsPerLine() {
+    final String path = "store";
+    var body = String.join("\n",
+        "{\"name\": \"HEMNES\", \"quantityProductsInStock\": 7}",
+        "{\"id\": 100, \"name\": \"MALM\"}",
+        "{\"name\": \"KALLAX\"}",
+        "not a json",
+        "",
+        "{\"name\": \"BILLY\", \"quantityProductsInStock\": 3}");
+
+    // When
+    var results = given()
+        .when()
+        .contentType("application/x-ndjson")
+        .body(body.getBytes(StandardCharsets.UTF_8))
+        .post(path + "/bulk")
+        .then()
+        .statusCode(200)
+        .extract()
+        .asString()
+        .lines()
+        .toList();
+
+    // Then: one result line for every non-empty line
+    assertThat(results).hasSize(5);
+    assertThat(results).anySatisfy(line -> assertThat(line).contains("\"line\":1", "\"code\":201", "\"id\""));
+    assertThat(results).anySatisfy(line -> assertThat(line).contains("\"line\":2", "\"code\":422", "Id was invalidly set on request."));
+    assertThat(results).anySatisfy(line -> assertThat(line).contains("\"line\":3", "\"code\":422", "already exists"));
+    assertThat(results).anySatisfy(line -> assertThat(line).contains("\"line\":4", "\"code\":400"));
+    assertThat(results).anySatisfy(line -> assertThat(line).contains("\"line\":6", "\"code\":201", "\"id\""));
+
+    given()
+        .when()
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body(containsString("HEMNES"), containsString("BILLY"), not(containsString("MALM")));
+
+    // Delete created stores
+    results.stream()
+        .filter(line -> line.contains("\"code\":201"))
+        .map(line -> line.replaceAll(".*\"id\":(\\d+).*", "$1"))
+        .forEach(id -> given().when().delete(path + '/' + id).then().statusCode(204));
+  }
+
+  @Test
+  public void testStockDelta_WhenAppliedConcurrently_ThenNoDeltaIsLost() {
+    final String path = "store";
+
+    // When: BESTÅ stock is increased concurrently
+    IntStream.range(0, 20).parallel().forEach(i -> given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("delta", 1))
+        .post(path + "/3/stock-delta")
+        .then()
+        .statusCode(200));
+
+    // Then
+    given()
+        .when()
+        .get(path + "/3")
         .then()
         .statusCode(200)
+        .body("quantityProductsInStock", is(23));
+
+    // Stock can't go below zero:
+    given()
+        .when()
         .contentType(ContentType.JSON)
-        .body(containsString("WORTUNG"), containsString("10"));
+        .body(Map.of("delta", -24))
+        .post(path + "/3/stock-delta")
+        .then()
+        .statusCode(409)
+        .body(containsString("doesn't have enough stock"));
 
-    // Delete WORTUNG:
     given()
         .when()
-        .delete(path + '/' + id)
+        .contentType(ContentType.JSON)
+        .body(Map.of("delta", 1))
+        .post(path + "/100500/stock-delta")
         .then()
-        .statusCode(204);
+        .statusCode(404);
+
+    // Restore BESTÅ to the initial state
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("delta", -20))
+        .post(path + "/3/stock-delta")
+        .then()
+        .statusCode(200)
+        .body("name", is("BESTÅ"), "quantityProductsInStock", is(3));
+  }
+
+  @Test
+  public void testStoreWrites_WhenRetriedWithIdempotencyKey_ThenAppliedOnce() {
+    final String path = "store";
+    var id = given()
+        .when()
+        .header("Idempotency-Key", "create-lack")
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "LACK", "quantityProductsInStock", 1))
+        .post(path)
+        .then()
+        .statusCode(201)
+        .extract()
+        .jsonPath()
+        .getLong("id");
+
+    // Retries get the first Store, none is created
+    given()
+        .when()
+        .header("Idempotency-Key", "create-lack")
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "LACK", "quantityProductsInStock", 1))
+        .post(path)
+        .then()
+        .statusCode(201)
+        .header("Idempotent-Replayed", "true")
+        .header("Location", endsWith("/store/" + id))
+        .header("ETag", notNullValue())
+        .body("id", is((int) id));
 
-    verify(legacyStore, times(1)).createStoreOnLegacySystem(any());
-    verify(legacyStore, times(2)).updateStoreOnLegacySystem(any()); // For PUT, PATCH
+    for (int i = 0; i < 2; i++) {
+      given()
+          .when()
+          .header("Idempotency-Key", "lack-delta")
+          .contentType(ContentType.JSON)
+          .body(Map.of("delta", 4))
+          .post(path + "/" + id + "/stock-delta")
+          .then()
+          .statusCode(200)
+          .body("quantityProductsInStock", is(5));
+    }
+    given()
+        .when()
+        .header("Idempotency-Key", "lack-delta")
+        .contentType(ContentType.JSON)
+        .body(Map.of("delta", 5))
+        .post(path + "/" + id + "/stock-delta")
+        .then()
+        .statusCode(422);
+
+    given()
+        .when()
+        .get(path + "/" + id)
+        .then()
+        .statusCode(200)
+        .body("quantityProductsInStock", is(5));
+    given().when().delete(path + "/" + id).then().statusCode(204);
+  }
+
+  @Test
+  public void testStockDeltas_WhenAppliedInBatch_ThenSkipDeltasTakingStockBelowZero() {
+    // When: BESTÅ and KALLAX stock deltas are applied in one statement
+    var stores = storeStockRepository.applyDeltas(Map.of(3L, 2L, 2L, -1000L));
+
+    // Then: only BESTÅ is changed
+    assertThat(stores).singleElement().satisfies(store -> {
+      assertThat(store.name).isEqualTo("BESTÅ");
+      assertThat(store.quantityProductsInStock).isEqualTo(5);
+    });
+    given()
+        .when()
+        .get("store/2")
+        .then()
+        .statusCode(200)
+        .body("quantityProductsInStock", is(5));
+
+    // Restore BESTÅ to the initial state
+    storeStockRepository.applyDeltas(Map.of(3L, -2L));
+  }
+
+  @Test
+  public void testConditionalRequests_WhenETagMatches_ThenSkipBodyOrRejectStaleUpdate() {
+    final String path = "store/3";
+    var etag = given()
+        .when()
+        .get(path)
+        .then()
+        .statusCode(200)
+        .extract()
+        .header("ETag");
+    assertThat(etag).isNotBlank();
+
+    // Not modified since the last GET:
+    given()
+        .when()
+        .header("If-None-Match", etag)
+        .get(path)
+        .then()
+        .statusCode(304)
+        .body(is(""));
+
+    // Update based on a stale version is rejected:
+    given()
+        .when()
+        .header("If-Match", "\"100500\"")
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "BESTÅ", "quantityProductsInStock", 100))
+        .put(path)
+        .then()
+        .statusCode(412);
+
+    // Update based on the current version:
+    var newEtag = given()
+        .when()
+        .header("If-Match", etag)
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "BESTÅ", "quantityProductsInStock", 100))
+        .put(path)
+        .then()
+        .statusCode(200)
+        .extract()
+        .header("ETag");
+    assertThat(newEtag).isNotEqualTo(etag);
+
+    given()
+        .when()
+        .header("If-None-Match", etag)
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("quantityProductsInStock", is(100));
+
+    // Restore BESTÅ to the initial state
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("name", "BESTÅ", "quantityProductsInStock", 3))
+        .put(path)
+        .then()
+        .statusCode(200);
+  }
+
+  @Test
+  public void testMergePatch_WhenFieldIsMissing_ThenKeepItsValue() {
+    final String path = "store/3";
+
+    // When: patch BESTÅ stock only
+    given()
+        .when()
+        .contentType("application/merge-patch+json")
+        .body("{\"quantityProductsInStock\": 42}".getBytes(StandardCharsets.UTF_8))
+        .patch(path)
+        .then()
+        .statusCode(200)
+        .header("ETag", not(is((String) null)))
+        .body("name", is("BESTÅ"), "quantityProductsInStock", is(42));
+
+    // Then
+    given()
+        .when()
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("name", is("BESTÅ"), "quantityProductsInStock", is(42));
+
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("stock", 1))
+        .patch(path)
+        .then()
+        .statusCode(422)
+        .body(containsString("Store doesn't have field stock."));
+
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("quantityProductsInStock", 1))
+        .patch("store/100500")
+        .then()
+        .statusCode(404);
+
+    // Restore BESTÅ to the initial state
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("quantityProductsInStock", 3))
+        .patch(path)
+        .then()
+        .statusCode(200)
+        .body("quantityProductsInStock", is(3));
   }
 }
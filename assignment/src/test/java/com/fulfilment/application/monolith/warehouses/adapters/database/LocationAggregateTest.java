@@ -0,0 +1,109 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.locations.adapters.database.DbLocation;
+import com.fulfilment.application.monolith.warehouses.domain.models.CreateWithinLimitsResult.Outcome;
+import com.fulfilment.application.monolith.warehouses.domain.models.LocationAggregate;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+public class LocationAggregateTest {
+
+  private static final String LOCATION = "AGGREGATE-001";
+  private static final String OTHER_LOCATION = "AGGREGATE-002";
+
+  @Inject
+  WarehouseRepository warehouseRepository;
+  @Inject
+  LocationAggregateReconciler locationAggregateReconciler;
+
+  @AfterEach
+  public void tearDown() {
+    QuarkusTransaction.requiringNew().run(() -> {
+      var entityManager = warehouseRepository.getEntityManager();
+      for (var entity : List.of("DbWarehouse", "DbArchivedWarehouse", "DbLocationAggregate")) {
+        entityManager.createQuery("delete from " + entity + " where location in (?1, ?2)")
+            .setParameter(1, LOCATION)
+            .setParameter(2, OTHER_LOCATION)
+            .executeUpdate();
+      }
+    });
+  }
+
+  @Test
+  public void testAggregate_WhenWarehousesCreatedMovedAndArchived_ThenTotalsFollow() {
+    QuarkusTransaction.requiringNew().run(() -> {
+      warehouseRepository.create(warehouse("AGG.1", LOCATION, 10, 1));
+      warehouseRepository.create(warehouse("AGG.2", LOCATION, 20, 2));
+      warehouseRepository.create(warehouse("AGG.3", LOCATION, 30, 3));
+    });
+    assertThat(aggregate(LOCATION)).isEqualTo(new LocationAggregate(LOCATION, 3, 60, 6));
+
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.update(warehouse("AGG.2", OTHER_LOCATION, 25, 2)));
+    var archived = warehouse("AGG.3", LOCATION, 30, 3);
+    archived.archivedAt = LocalDateTime.now();
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.update(archived));
+
+    assertThat(aggregate(LOCATION)).isEqualTo(new LocationAggregate(LOCATION, 1, 10, 1));
+    assertThat(aggregate(OTHER_LOCATION)).isEqualTo(new LocationAggregate(OTHER_LOCATION, 1, 25, 2));
+  }
+
+  @Test
+  public void testAggregate_WhenBusinessUnitCodeExists_ThenSingleStatementCreateLeavesTotals() {
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.create(warehouse("AGG.DUPLICATE", LOCATION, 10, 1)));
+    QuarkusTransaction.requiringNew().run(() -> {
+      var dbLocation = new DbLocation();
+      dbLocation.identification = LOCATION;
+      dbLocation.maxNumberOfWarehouses = 5;
+      dbLocation.maxCapacity = 100;
+      dbLocation.persist();
+    });
+    try {
+      var result = QuarkusTransaction.requiringNew().call(() ->
+          warehouseRepository.tryCreateWithinLimits(warehouse("AGG.DUPLICATE", LOCATION, 10, 1)));
+
+      assertThat(result.outcome()).isEqualTo(Outcome.BUSINESS_UNIT_CODE_EXISTS);
+      assertThat(aggregate(LOCATION)).isEqualTo(new LocationAggregate(LOCATION, 1, 10, 1));
+    } finally {
+      QuarkusTransaction.requiringNew().run(() -> DbLocation.delete("identification", LOCATION));
+    }
+  }
+
+  @Test
+  public void testReconcile_WhenWarehousesWrittenAroundRepository_ThenAggregateRepaired() {
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.create(warehouse("AGG.TRACKED", LOCATION, 10, 1)));
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.getEntityManager().createNativeQuery("""
+            insert into warehouse(id, businessUnitCode, location, capacity, stock, createdAt)
+            values (nextval('warehouse_seq'), 'AGG.UNTRACKED', ?1, 40, 4, now())""")
+        .setParameter(1, LOCATION)
+        .executeUpdate());
+
+    int repaired = locationAggregateReconciler.reconcile();
+
+    assertThat(repaired).isPositive();
+    assertThat(aggregate(LOCATION)).isEqualTo(new LocationAggregate(LOCATION, 2, 50, 5));
+  }
+
+  private LocationAggregate aggregate(String location) {
+    return QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findAggregate(location));
+  }
+
+  private static Warehouse warehouse(String businessUnitCode, String location, int capacity, int stock) {
+    var warehouse = new Warehouse();
+    warehouse.businessUnitCode = businessUnitCode;
+    warehouse.location = location;
+    warehouse.capacity = capacity;
+    warehouse.stock = stock;
+    warehouse.createdAt = LocalDateTime.now();
+    return warehouse;
+  }
+}
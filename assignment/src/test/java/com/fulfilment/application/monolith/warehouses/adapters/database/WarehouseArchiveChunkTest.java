@@ -0,0 +1,84 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@QuarkusTest
+public class WarehouseArchiveChunkTest {
+
+  private static final String LOCATION = "CHUNK-001";
+  private static final String OTHER_LOCATION = "CHUNK-002";
+
+  @Inject
+  WarehouseRepository warehouseRepository;
+
+  @AfterEach
+  public void tearDown() {
+    QuarkusTransaction.requiringNew().run(() -> {
+      var entityManager = warehouseRepository.getEntityManager();
+      for (var entity : List.of("DbWarehouse", "DbArchivedWarehouse", "DbLocationAggregate")) {
+        entityManager.createQuery("delete from " + entity + " where location in (?1, ?2)")
+            .setParameter(1, LOCATION)
+            .setParameter(2, OTHER_LOCATION)
+            .executeUpdate();
+      }
+    });
+  }
+
+  @Test
+  public void testArchiveChunk_WhenWarehouseLockedByReplace_ThenWaitsAndArchivesTheRest() throws Exception {
+    QuarkusTransaction.requiringNew().run(() -> {
+      warehouseRepository.create(warehouse("CHUNK.1", LOCATION));
+      warehouseRepository.create(warehouse("CHUNK.2", LOCATION));
+      warehouseRepository.create(warehouse("CHUNK.3", LOCATION));
+    });
+    var replaced = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    // Replace of the first Warehouse of the chunk holds its row lock and moves it away from the Location
+    var replace = CompletableFuture.runAsync(() -> QuarkusTransaction.requiringNew().run(() -> {
+      warehouseRepository.update(warehouse("CHUNK.1", OTHER_LOCATION));
+      replaced.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }));
+    assertThat(replaced.await(10, TimeUnit.SECONDS)).isTrue();
+
+    var chunk = CompletableFuture.supplyAsync(() -> QuarkusTransaction.requiringNew()
+        .call(() -> warehouseRepository.archiveChunk(LOCATION, null, LocalDateTime.now(), 2)));
+    TimeUnit.MILLISECONDS.sleep(200);
+    assertThat(chunk).isNotDone();
+    release.countDown();
+    replace.get(10, TimeUnit.SECONDS);
+
+    // Replaced Warehouse doesn't match anymore, the chunk is filled with the Warehouses behind it
+    assertThat(chunk.get(10, TimeUnit.SECONDS)).isEqualTo(2);
+    assertThat(QuarkusTransaction.requiringNew().call(() -> warehouseRepository.countByLocation(LOCATION))).isZero();
+    assertThat(QuarkusTransaction.requiringNew().call(() -> warehouseRepository.countByLocation(OTHER_LOCATION)))
+        .isEqualTo(1);
+  }
+
+  private static Warehouse warehouse(String businessUnitCode, String location) {
+    var warehouse = new Warehouse();
+    warehouse.businessUnitCode = businessUnitCode;
+    warehouse.location = location;
+    warehouse.capacity = 10;
+    warehouse.stock = 1;
+    warehouse.createdAt = LocalDateTime.now();
+    return warehouse;
+  }
+}
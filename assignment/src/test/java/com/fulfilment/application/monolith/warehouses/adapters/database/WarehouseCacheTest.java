@@ -0,0 +1,144 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+public class WarehouseCacheTest {
+
+  private static final String LOCATION = "CACHE-001";
+
+  @Inject
+  WarehouseRepository warehouseRepository;
+  @Inject
+  WarehouseCache warehouseCache;
+  @Inject
+  EntityManagerFactory entityManagerFactory;
+  @Inject
+  MeterRegistry registry;
+
+  @AfterEach
+  public void tearDown() {
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.delete("location", LOCATION));
+  }
+
+  @Test
+  public void testFind_WhenCached_ThenNoQuery() {
+    create("CACHE.HIT");
+    var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    double hits = cacheGets("hit");
+
+    var first = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode("CACHE.HIT"));
+    long queries = statistics.getPrepareStatementCount();
+    var second = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode("CACHE.HIT"));
+
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(queries);
+    assertThat(cacheGets("hit")).isEqualTo(hits + 1);
+    assertThat(second).isNotSameAs(first).usingRecursiveComparison().isEqualTo(first);
+  }
+
+  @Test
+  public void testFind_WhenReturnedWarehouseChanged_ThenCacheNotChanged() {
+    create("CACHE.COPY");
+    var warehouse = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode("CACHE.COPY"));
+
+    warehouse.archivedAt = LocalDateTime.now();
+
+    var cached = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode("CACHE.COPY"));
+    assertThat(cached.archivedAt).isNull();
+  }
+
+  @Test
+  public void testFind_WhenArchived_ThenInvalidatedOnCommit() {
+    create("CACHE.ARCHIVE");
+    var warehouse = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode("CACHE.ARCHIVE"));
+
+    warehouse.archivedAt = LocalDateTime.now();
+    QuarkusTransaction.requiringNew().run(() -> {
+      warehouseRepository.update(warehouse);
+      // Writing transaction reads its own change, not the cached snapshot
+      assertThat(warehouseRepository.findByBusinessUnitCode("CACHE.ARCHIVE")).isNull();
+    });
+
+    assertThat(QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode("CACHE.ARCHIVE"))).isNull();
+  }
+
+  @Test
+  public void testFind_WhenCreationRolledBack_ThenNotCached() {
+    assertThrows(IllegalStateException.class, () -> QuarkusTransaction.requiringNew().run(() -> {
+      warehouseRepository.create(warehouse("CACHE.ROLLBACK"));
+      // Uncommitted Warehouse is found by its own transaction, but must not be cached
+      assertThat(warehouseRepository.findByBusinessUnitCode("CACHE.ROLLBACK")).isNotNull();
+      throw new IllegalStateException("Rollback");
+    }));
+
+    assertThat(QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode("CACHE.ROLLBACK"))).isNull();
+  }
+
+  @Test
+  public void testFind_WhenReplacedAndArchivedByAnotherInstance_ThenReadFromDatabaseOnceExpired() {
+    create("CACHE.OTHER");
+    assertThat(find("CACHE.OTHER").capacity).isEqualTo(10);
+
+    // Another instance writes the row, this instance isn't told
+    executeJdbc("update warehouse set capacity = 20 where businessUnitCode = 'CACHE.OTHER'");
+    assertThat(find("CACHE.OTHER").capacity).isEqualTo(10);
+    expire("CACHE.OTHER");
+    assertThat(find("CACHE.OTHER").capacity).isEqualTo(20);
+
+    executeJdbc("delete from warehouse where businessUnitCode = 'CACHE.OTHER'");
+    expire("CACHE.OTHER");
+    assertThat(find("CACHE.OTHER")).isNull();
+  }
+
+  private Warehouse find(String businessUnitCode) {
+    return QuarkusTransaction.requiringNew().call(() -> warehouseRepository.findByBusinessUnitCode(businessUnitCode));
+  }
+
+  private void executeJdbc(String sql) {
+    // Bypasses Hibernate, as a write of another instance does
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.getEntityManager().unwrap(Session.class)
+        .doWork(connection -> {
+          try (var statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+          }
+        }));
+  }
+
+  private void expire(String businessUnitCode) {
+    // Drops the entry as its expire-after-write does
+    QuarkusTransaction.requiringNew().run(() -> warehouseCache.invalidateOnCompletion(businessUnitCode));
+  }
+
+  private void create(String businessUnitCode) {
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.create(warehouse(businessUnitCode)));
+  }
+
+  private static Warehouse warehouse(String businessUnitCode) {
+    var warehouse = new Warehouse();
+    warehouse.businessUnitCode = businessUnitCode;
+    warehouse.location = LOCATION;
+    warehouse.capacity = 10;
+    warehouse.stock = 1;
+    warehouse.createdAt = LocalDateTime.now();
+    return warehouse;
+  }
+
+  private double cacheGets(String result) {
+    return registry.get("cache.gets").tag("cache", "warehouse_by_business_unit_code").tag("result", result)
+        .functionCounter().count();
+  }
+}
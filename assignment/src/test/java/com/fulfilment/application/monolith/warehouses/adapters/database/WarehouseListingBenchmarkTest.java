@@ -0,0 +1,82 @@
+package com.fulfilment.application.monolith.warehouses.adapters.database;
+
+import com.fulfilment.application.monolith.warehouses.domain.models.WarehouseFilter;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Lists 100k active Warehouses through the entity path (load DbWarehouse entities, map to Warehouse)
+ * and through the projection path (select the listed columns into WarehouseSummary),
+ * and reports per listing: latency and bytes allocated by the listing thread.
+ */
+@QuarkusTest
+public class WarehouseListingBenchmarkTest {
+
+  private static final Logger LOGGER = Logger.getLogger(WarehouseListingBenchmarkTest.class.getName());
+  private static final String LOCATION = "BENCHLIST-001";
+  private static final int WAREHOUSES = 100_000;
+  private static final int WARMUPS = 3;
+  private static final int RUNS = 5;
+
+  @Inject
+  WarehouseRepository warehouseRepository;
+
+  private record Measurement(double millis, double megabytes) {
+  }
+
+  @Test
+  public void testListing_When100kWarehouses_ThenProjectionAllocatesLess() {
+    QuarkusTransaction.requiringNew().run(() -> warehouseRepository.getEntityManager().createNativeQuery("""
+            insert into warehouse(id, businessUnitCode, location, capacity, stock, createdAt)
+            select nextval('warehouse_seq'), 'BENCH.' || lpad(cast(n as text), 6, '0'), ?1, n % 100 + 1, 1, now()
+            from generate_series(1, ?2) as n""")
+        .setParameter(1, LOCATION)
+        .setParameter(2, WAREHOUSES)
+        .executeUpdate());
+    try {
+      var filter = new WarehouseFilter(LOCATION, null, null);
+      var entities = measure("entities", () -> warehouseRepository.getAll().stream()
+          .filter(warehouse -> LOCATION.equals(warehouse.location))
+          .toList());
+      var projection = measure("projection", () -> warehouseRepository.listActive(filter, null, null));
+      var filtered = measure("projection, capacity filter", () ->
+          warehouseRepository.listActive(new WarehouseFilter(LOCATION, 1, 10), null, null));
+
+      assertThat(projection.megabytes()).isLessThan(entities.megabytes() / 2);
+      assertThat(filtered.megabytes()).isLessThan(projection.megabytes() / 5);
+    } finally {
+      QuarkusTransaction.requiringNew().run(() -> warehouseRepository.delete("location", LOCATION));
+    }
+  }
+
+  private Measurement measure(String name, Supplier<List<?>> listing) {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < WARMUPS; i++) {
+      QuarkusTransaction.requiringNew().call(listing::get);
+    }
+    long bytes = 0;
+    long nanos = 0;
+    int rows = 0;
+    for (int i = 0; i < RUNS; i++) {
+      long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+      long startedAt = System.nanoTime();
+      rows = QuarkusTransaction.requiringNew().call(listing::get).size();
+      nanos += System.nanoTime() - startedAt;
+      bytes += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    }
+    var measurement = new Measurement(nanos / 1e6 / RUNS, bytes / 1e6 / RUNS);
+    LOGGER.infov("{0}: {1} rows, {2} ms, {3} MB allocated per listing",
+        name, rows, "%.1f".formatted(measurement.millis()), "%.1f".formatted(measurement.megabytes()));
+    return measurement;
+  }
+}
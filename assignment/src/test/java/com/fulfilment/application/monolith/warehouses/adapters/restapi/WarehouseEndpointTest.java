@@ -4,10 +4,19 @@ import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.Map;
 
 import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.IsNot.not;
 
 @QuarkusTest
@@ -27,6 +36,243 @@ public class WarehouseEndpointTest {
         .body(containsString("MWH.001"), containsString("MWH.012"), containsString("MWH.023"));
   }
 
+  @Test
+  public void testKeysetPagination_WhenPagesFollowEachOther_ThenListAllWarehousesOnce() {
+    final String path = "warehouse";
+
+    given()
+        .when()
+        .queryParam("limit", 2)
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("businessUnitCode", contains("MWH.001", "MWH.012"));
+
+    given()
+        .when()
+        .queryParam("limit", 2)
+        .queryParam("after", "MWH.012")
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("businessUnitCode", contains("MWH.023"));
+  }
+
+  @Test
+  public void testListFilters_ThenOnlyMatchingWarehouses() {
+    final String path = "warehouse";
+
+    given()
+        .when()
+        .queryParam("location", "AMSTERDAM-001")
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("businessUnitCode", contains("MWH.012"));
+
+    given()
+        .when()
+        .queryParam("minCapacity", 30)
+        .queryParam("maxCapacity", 50)
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("businessUnitCode", contains("MWH.012", "MWH.023"));
+
+    given()
+        .when()
+        .queryParam("minCapacity", 50)
+        .queryParam("maxCapacity", 30)
+        .get(path)
+        .then()
+        .statusCode(422);
+  }
+
+  @Test
+  public void testStream_ThenListAllWarehousesSortedByBusinessUnitCode() {
+    given()
+        .when()
+        .get("warehouse/stream")
+        .then()
+        .statusCode(200)
+        .body("businessUnitCode", contains("MWH.001", "MWH.012", "MWH.023"));
+  }
+
+  @Test
+  public void testArchive_WhenWarehouseArchivedTwice_ThenListedInArchiveOnly() {
+    final String path = "warehouse";
+    var warehouse = Map.of(
+        "businessUnitCode", "MWH.ARCHIVE",
+        "location", "EINDHOVEN-001",
+        "capacity", 20,
+        "stock", 5
+    );
+
+    // Archived business unit code can be taken again, every archiving keeps its own archived Warehouse
+    for (int i = 0; i < 2; i++) {
+      given().when().contentType(ContentType.JSON).body(warehouse).post(path).then().statusCode(200);
+      given().when().delete(path + "/MWH.ARCHIVE").then().statusCode(204);
+    }
+
+    given()
+        .when()
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body(not(containsString("MWH.ARCHIVE")));
+
+    given()
+        .when()
+        .queryParam("businessUnitCode", "MWH.ARCHIVE")
+        .get(path + "/archive")
+        .then()
+        .statusCode(200)
+        .body("businessUnitCode", contains("MWH.ARCHIVE", "MWH.ARCHIVE"))
+        .body("location", everyItem(is("EINDHOVEN-001")))
+        .body("archivedAt", everyItem(notNullValue()));
+
+    given()
+        .when()
+        .queryParam("businessUnitCode", "MWH.ARCHIVE")
+        .queryParam("limit", 1)
+        .get(path + "/archive")
+        .then()
+        .statusCode(200)
+        .body("$", hasSize(1));
+  }
+
+  @Test
+  public void testListArchive_ThenSortedByArchivingOrder() {
+    final String path = "warehouse";
+    for (var businessUnitCode : List.of("MWH.ORDER.1", "MWH.ORDER.2")) {
+      given()
+          .when()
+          .contentType(ContentType.JSON)
+          .body(Map.of("businessUnitCode", businessUnitCode, "location", "EINDHOVEN-001", "capacity", 20, "stock", 5))
+          .post(path)
+          .then()
+          .statusCode(200);
+    }
+    // Archived in the reverse order of creation, so of ids
+    given().when().delete(path + "/MWH.ORDER.2").then().statusCode(204);
+    given().when().delete(path + "/MWH.ORDER.1").then().statusCode(204);
+
+    List<Map<String, Object>> archived = given()
+        .when()
+        .queryParam("location", "EINDHOVEN-001")
+        .get(path + "/archive")
+        .then()
+        .statusCode(200)
+        .extract().jsonPath().getList("$");
+    var ordered = archived.stream().filter(warehouse -> warehouse.get("businessUnitCode").toString().startsWith("MWH.ORDER")).toList();
+    assertThat(ordered).extracting(warehouse -> warehouse.get("businessUnitCode")).containsExactly("MWH.ORDER.2", "MWH.ORDER.1");
+
+    given()
+        .when()
+        .queryParam("location", "EINDHOVEN-001")
+        .queryParam("after", ordered.get(0).get("id"))
+        .get(path + "/archive")
+        .then()
+        .statusCode(200)
+        .body("businessUnitCode", hasItem("MWH.ORDER.1"))
+        .body("businessUnitCode", not(hasItem("MWH.ORDER.2")));
+  }
+
+  @Test
+  public void testBulkArchive_WhenLocationGiven_ThenAllWarehousesAtLocationArchived() {
+    final String path = "warehouse";
+    for (var businessUnitCode : List.of("MWH.BULK.1", "MWH.BULK.2")) {
+      given()
+          .when()
+          .contentType(ContentType.JSON)
+          .body(Map.of("businessUnitCode", businessUnitCode, "location", "AMSTERDAM-002", "capacity", 20, "stock", 5))
+          .post(path)
+          .then()
+          .statusCode(200);
+    }
+
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("location", "AMSTERDAM-002"))
+        .post(path + "/archive")
+        .then()
+        .statusCode(200)
+        .body("archived", is(2), "chunks", is(1));
+
+    given()
+        .when()
+        .queryParam("location", "AMSTERDAM-002")
+        .get(path)
+        .then()
+        .statusCode(200)
+        .body("$", hasSize(0));
+    given()
+        .when()
+        .queryParam("location", "AMSTERDAM-002")
+        .get(path + "/archive")
+        .then()
+        .statusCode(200)
+        .body("businessUnitCode", contains("MWH.BULK.1", "MWH.BULK.2"));
+
+    // Nothing left to archive
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of("location", "AMSTERDAM-002"))
+        .post(path + "/archive")
+        .then()
+        .statusCode(200)
+        .body("archived", is(0), "chunks", is(0));
+
+    given()
+        .when()
+        .contentType(ContentType.JSON)
+        .body(Map.of())
+        .post(path + "/archive")
+        .then()
+        .statusCode(400);
+  }
+
+  @Test
+  public void testCreate_WhenRetriedWithIdempotencyKey_ThenFirstResponseReplayed() {
+    final String path = "warehouse";
+    var warehouse = Map.of("businessUnitCode", "MWH.IDEMPOTENT", "location", "HELMOND-001", "capacity", 20, "stock", 5);
+
+    given()
+        .when()
+        .header("Idempotency-Key", "create-mwh-idempotent")
+        .contentType(ContentType.JSON)
+        .body(warehouse)
+        .post(path)
+        .then()
+        .statusCode(200)
+        .header("Idempotent-Replayed", nullValue());
+
+    // Without the key the retry would fail: the business unit code exists and HELMOND-001 is full
+    given()
+        .when()
+        .header("Idempotency-Key", "create-mwh-idempotent")
+        .contentType(ContentType.JSON)
+        .body(warehouse)
+        .post(path)
+        .then()
+        .statusCode(200)
+        .header("Idempotent-Replayed", "true")
+        .body("businessUnitCode", is("MWH.IDEMPOTENT"), "location", is("HELMOND-001"));
+
+    given()
+        .when()
+        .header("Idempotency-Key", "create-mwh-idempotent")
+        .contentType(ContentType.JSON)
+        .body(Map.of("businessUnitCode", "MWH.IDEMPOTENT", "location", "HELMOND-001", "capacity", 30, "stock", 5))
+        .post(path)
+        .then()
+        .statusCode(422);
+
+    given().when().delete(path + "/MWH.IDEMPOTENT").then().statusCode(204);
+  }
+
   @Test
   public void testSimpleArchivingAndCreatingWarehouses() {
     final String path = "warehouse";
@@ -0,0 +1,84 @@
+package com.fulfilment.application.monolith.warehouses.domain.usecases;
+
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
+import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.quarkus.test.InjectMock;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.time.LocalDateTime;
+
+@QuarkusTest
+public class BulkArchiveWarehouseUseCaseTest {
+
+  @InjectMock
+  WarehouseStore warehouseStore;
+
+  @InjectMock
+  LocationResolverOperation locationResolverOperation;
+
+  @Inject
+  BulkArchiveWarehouseUseCase bulkArchiveWarehouseUseCase;
+
+  @ConfigProperty(name = "warehouse.bulk-archive.chunk-size")
+  int chunkSize;
+
+  @Test
+  public void testBulkArchiveNoCriteria() {
+    // When & Then
+    WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
+      bulkArchiveWarehouseUseCase.archive(null, null);
+    });
+
+    Assertions.assertEquals(400, exception.getResponse().getStatus());
+    Assertions.assertTrue(exception.getMessage().contains("No location or createdBefore provided"));
+    Mockito.verifyNoInteractions(warehouseStore);
+  }
+
+  @Test
+  public void testBulkArchiveLocationNotFound() {
+    // Mock behavior
+    Mockito.when(locationResolverOperation.resolveByIdentifier("UNKNOWN-001")).thenReturn(null);
+
+    // When & Then
+    WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
+      bulkArchiveWarehouseUseCase.archive("UNKNOWN-001", null);
+    });
+
+    Assertions.assertEquals(400, exception.getResponse().getStatus());
+    Assertions.assertTrue(exception.getMessage().contains("Location [location=UNKNOWN-001] doesn't exist"));
+    Mockito.verifyNoInteractions(warehouseStore);
+  }
+
+  @Test
+  public void testBulkArchiveStopsAfterPartialChunk() {
+    // Given
+    var createdBefore = LocalDateTime.now();
+
+    // Mock behavior
+    Mockito.when(locationResolverOperation.resolveByIdentifier("ZWOLLE-001")).thenReturn(new Location("ZWOLLE-001", 1, 100));
+    Mockito.when(warehouseStore.archiveChunk(ArgumentMatchers.eq("ZWOLLE-001"), ArgumentMatchers.eq(createdBefore),
+            ArgumentMatchers.any(), ArgumentMatchers.eq(chunkSize)))
+        .thenReturn(chunkSize, chunkSize, 7);
+
+    // When
+    var result = bulkArchiveWarehouseUseCase.archive("ZWOLLE-001", createdBefore);
+
+    // Then
+    Assertions.assertEquals(2L * chunkSize + 7, result.archived());
+    Assertions.assertEquals(3, result.chunks());
+    // Every chunk of a run archives Warehouses with the same archivedAt
+    var archivedAt = ArgumentCaptor.forClass(LocalDateTime.class);
+    Mockito.verify(warehouseStore, Mockito.times(3)).archiveChunk(ArgumentMatchers.eq("ZWOLLE-001"),
+        ArgumentMatchers.eq(createdBefore), archivedAt.capture(), ArgumentMatchers.eq(chunkSize));
+    Assertions.assertEquals(1, archivedAt.getAllValues().stream().distinct().count());
+  }
+}
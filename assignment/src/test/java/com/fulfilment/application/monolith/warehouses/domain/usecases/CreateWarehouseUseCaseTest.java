@@ -2,8 +2,12 @@ package com.fulfilment.application.monolith.warehouses.domain.usecases;
 
 import com.fulfilment.application.monolith.locations.domain.models.Location;
 import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
+import com.fulfilment.application.monolith.warehouses.domain.models.CreateWithinLimitsResult;
+import com.fulfilment.application.monolith.warehouses.domain.models.CreateWithinLimitsResult.Outcome;
+import com.fulfilment.application.monolith.warehouses.domain.models.LocationAggregate;
 import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
 import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
+import io.quarkus.arc.ClientProxy;
 import io.quarkus.test.InjectMock;
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
@@ -61,9 +65,11 @@ public class CreateWarehouseUseCaseTest {
     Warehouse warehouse = new Warehouse();
     warehouse.businessUnitCode = "MWH.001";
     warehouse.location = "Location1";
+    warehouse.stock = 10;
 
     // Mock existing warehouse
-    Mockito.when(warehouseStore.findByBusinessUnitCode("MWH.001")).thenReturn(new Warehouse());
+    Mockito.when(warehouseStore.tryCreateWithinLimits(warehouse))
+        .thenReturn(new CreateWithinLimitsResult(Outcome.BUSINESS_UNIT_CODE_EXISTS, null, LocationAggregate.empty("ValidLocation")));
 
     // When & Then
     WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
@@ -80,9 +86,11 @@ public class CreateWarehouseUseCaseTest {
     Warehouse warehouse = new Warehouse();
     warehouse.businessUnitCode = "MWH.001";
     warehouse.location = "InvalidLocation";
+    warehouse.stock = 10;
 
-    // Mock location resolver to return null for invalid location
-    Mockito.when(locationResolverOperation.resolveByIdentifier("InvalidLocation")).thenReturn(null);
+    // Mock invalid location
+    Mockito.when(warehouseStore.tryCreateWithinLimits(warehouse))
+        .thenReturn(new CreateWithinLimitsResult(Outcome.LOCATION_NOT_FOUND, null, LocationAggregate.empty("ValidLocation")));
 
     // When & Then
     WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
@@ -99,11 +107,12 @@ public class CreateWarehouseUseCaseTest {
     Warehouse warehouse = new Warehouse();
     warehouse.businessUnitCode = "MWH.001";
     warehouse.location = "ValidLocation";
+    warehouse.stock = 10;
     Location location = new Location("ValidLocation", 5, 100_000_000);
 
-    // Mock location and warehouse count
-    Mockito.when(locationResolverOperation.resolveByIdentifier("ValidLocation")).thenReturn(location);
-    Mockito.when(warehouseStore.countByLocation("ValidLocation")).thenReturn(5L); // Maximum reached
+    // Mock maximum number of warehouses reached
+    Mockito.when(warehouseStore.tryCreateWithinLimits(warehouse))
+        .thenReturn(new CreateWithinLimitsResult(Outcome.MAX_NUMBER_OF_WAREHOUSES_REACHED, location, LocationAggregate.empty("ValidLocation")));
 
     // When & Then
     WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
@@ -120,12 +129,14 @@ public class CreateWarehouseUseCaseTest {
     Warehouse warehouse = new Warehouse();
     warehouse.businessUnitCode = "MWH.001";
     warehouse.location = "ValidLocation";
-    warehouse.capacity = 150;
+    warehouse.capacity = 50;
+    warehouse.stock = 10;
     Location location = new Location("ValidLocation", 100_000_000, 100);
 
-    // Mock location and capacity
-    Mockito.when(locationResolverOperation.resolveByIdentifier("ValidLocation")).thenReturn(location);
-    Mockito.when(locationResolverOperation.lockByIdentifier("ValidLocation")).thenReturn(location);
+    // Mock capacity exceeded by the total capacity at the Location
+    Mockito.when(warehouseStore.tryCreateWithinLimits(warehouse))
+        .thenReturn(new CreateWithinLimitsResult(Outcome.MAX_CAPACITY_EXCEEDED, location,
+            new LocationAggregate("ValidLocation", 1, 60, 5)));
 
     // When & Then
     WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
@@ -133,7 +144,7 @@ public class CreateWarehouseUseCaseTest {
     });
 
     Assertions.assertEquals(400, exception.getResponse().getStatus());
-    Assertions.assertTrue(exception.getMessage().contains("Capacity of warehouses exceeds max capacity at Location"));
+    Assertions.assertTrue(exception.getMessage().contains("Capacity of warehouses exceeds max capacity at Location [capacity=110, maxCapacity=100]"));
   }
 
   @Test
@@ -146,16 +157,83 @@ public class CreateWarehouseUseCaseTest {
     warehouse.stock = 10;
     Location location = new Location("ValidLocation", 10, 100);
 
-    // Mock location and warehouse count
-    Mockito.when(locationResolverOperation.resolveByIdentifier("ValidLocation")).thenReturn(location);
-    Mockito.when(locationResolverOperation.lockByIdentifier("ValidLocation")).thenReturn(location);
-    Mockito.when(warehouseStore.countByLocation("ValidLocation")).thenReturn(9L); // Less than max warehouses
+    // Mock successful creation
+    Mockito.when(warehouseStore.tryCreateWithinLimits(warehouse))
+        .thenReturn(new CreateWithinLimitsResult(Outcome.CREATED, location, LocationAggregate.empty("ValidLocation")));
 
     // When
     createWarehouseUseCase.create(warehouse);
 
     // Then
-    Mockito.verify(warehouseStore).create(warehouse);
+    Mockito.verify(warehouseStore).tryCreateWithinLimits(warehouse);
     Assertions.assertNotNull(warehouse.createdAt);
   }
+
+  @Test
+  public void testCreateWarehouseConflictRetried() {
+    // Given
+    Warehouse warehouse = new Warehouse();
+    warehouse.businessUnitCode = "MWH.001";
+    warehouse.location = "ValidLocation";
+    warehouse.capacity = 50;
+    warehouse.stock = 10;
+    Location location = new Location("ValidLocation", 10, 100);
+
+    // Mock concurrent creation that took the slot once
+    Mockito.when(warehouseStore.tryCreateWithinLimits(warehouse))
+        .thenReturn(new CreateWithinLimitsResult(Outcome.CONFLICT, location, LocationAggregate.empty("ValidLocation")))
+        .thenReturn(new CreateWithinLimitsResult(Outcome.CREATED, location, LocationAggregate.empty("ValidLocation")));
+
+    // When
+    createWarehouseUseCase.create(warehouse);
+
+    // Then
+    Mockito.verify(warehouseStore, Mockito.times(2)).tryCreateWithinLimits(warehouse);
+  }
+
+  @Test
+  public void testCreateWarehouseConflictNotResolved() {
+    // Given
+    Warehouse warehouse = new Warehouse();
+    warehouse.businessUnitCode = "MWH.001";
+    warehouse.location = "ValidLocation";
+    warehouse.capacity = 50;
+    warehouse.stock = 10;
+    Location location = new Location("ValidLocation", 10, 100);
+
+    // Mock concurrent creations that always take the slot
+    Mockito.when(warehouseStore.tryCreateWithinLimits(warehouse))
+        .thenReturn(new CreateWithinLimitsResult(Outcome.CONFLICT, location, LocationAggregate.empty("ValidLocation")));
+
+    // When & Then
+    WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
+      createWarehouseUseCase.create(warehouse);
+    });
+
+    Assertions.assertEquals(409, exception.getResponse().getStatus());
+  }
+
+  @Test
+  public void testCreateWarehouseNoCapacityInGroupCommit() {
+    // Given
+    Warehouse warehouse = new Warehouse();
+    warehouse.businessUnitCode = "MWH.001";
+    warehouse.location = "ValidLocation";
+    warehouse.stock = 10; // Missing capacity
+    var useCase = ClientProxy.unwrap(createWarehouseUseCase);
+    useCase.admissionStrategyName = CreateWarehouseUseCase.GROUP_COMMIT;
+
+    // When & Then
+    try {
+      WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
+        createWarehouseUseCase.create(warehouse);
+      });
+
+      Assertions.assertEquals(400, exception.getResponse().getStatus());
+      Assertions.assertTrue(exception.getMessage().contains("No Warehouse capacity provided"));
+      Mockito.verifyNoInteractions(locationResolverOperation);
+    } finally {
+      useCase.admissionStrategyName = CreateWarehouseUseCase.SINGLE_STATEMENT;
+    }
+  }
 }
@@ -2,6 +2,7 @@ package com.fulfilment.application.monolith.warehouses.domain.usecases;
 
 import com.fulfilment.application.monolith.locations.domain.models.Location;
 import com.fulfilment.application.monolith.locations.domain.ports.LocationResolverOperation;
+import com.fulfilment.application.monolith.warehouses.domain.models.LocationAggregate;
 import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
 import com.fulfilment.application.monolith.warehouses.domain.ports.WarehouseStore;
 import io.quarkus.test.InjectMock;
@@ -9,6 +10,7 @@ import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.WebApplicationException;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
@@ -24,6 +26,13 @@ public class ReplaceWarehouseUseCaseTest {
   @Inject
   ReplaceWarehouseUseCase replaceWarehouseUseCase;
 
+  @BeforeEach
+  public void setUp() {
+    // No warehouses at a Location unless a test says otherwise
+    Mockito.when(warehouseStore.findAggregate(Mockito.anyString()))
+        .thenAnswer(invocation -> LocationAggregate.empty(invocation.getArgument(0)));
+  }
+
   @Test
   public void testReplaceWarehouseNoBusinessUnitCode() {
     // Given
@@ -105,7 +114,8 @@ public class ReplaceWarehouseUseCaseTest {
     // Mock old warehouse, location, and warehouse count
     Mockito.when(warehouseStore.findByBusinessUnitCode("MWH.001")).thenReturn(new Warehouse());
     Mockito.when(locationResolverOperation.resolveByIdentifier("ValidLocation")).thenReturn(location);
-    Mockito.when(warehouseStore.countByLocation("ValidLocation")).thenReturn(6L); // Exceeds max
+    Mockito.when(warehouseStore.findAggregate("ValidLocation"))
+        .thenReturn(new LocationAggregate("ValidLocation", 6, 60, 6)); // Exceeds max
 
     // When & Then
     WebApplicationException exception = Assertions.assertThrows(WebApplicationException.class, () -> {
@@ -198,6 +208,7 @@ public class ReplaceWarehouseUseCaseTest {
   public void testReplaceWarehouseSuccessful() {
     // Given
     Warehouse oldWarehouse = new Warehouse();
+    oldWarehouse.location = "ValidLocation";
     oldWarehouse.capacity = 100;
     oldWarehouse.stock = 50;
 
@@ -211,14 +222,16 @@ public class ReplaceWarehouseUseCaseTest {
     // Mock old warehouse, location, and warehouse count
     Mockito.when(warehouseStore.findByBusinessUnitCode("MWH.001")).thenReturn(oldWarehouse);
     Mockito.when(locationResolverOperation.resolveByIdentifier("ValidLocation")).thenReturn(location);
-    Mockito.when(warehouseStore.countByLocation("ValidLocation")).thenReturn(1L);
+    // Old warehouse is the only one at the Location, its capacity is replaced: 100 - 100 + 150 <= 200
+    Mockito.when(warehouseStore.findAggregate("ValidLocation"))
+        .thenReturn(new LocationAggregate("ValidLocation", 1, 100, 50));
 
     // When
     replaceWarehouseUseCase.replace(newWarehouse);
 
     // Then
-    Mockito.verify(warehouseStore).remove(oldWarehouse);
-    Mockito.verify(warehouseStore).create(newWarehouse);
+    Mockito.verify(warehouseStore).update(newWarehouse);
+    Mockito.verify(warehouseStore, Mockito.never()).create(newWarehouse);
     Assertions.assertNotNull(newWarehouse.createdAt);
   }
 }
@@ -0,0 +1,239 @@
+package com.fulfilment.application.monolith.warehouses.domain.usecases;
+
+import com.fulfilment.application.monolith.locations.adapters.database.DbLocation;
+import com.fulfilment.application.monolith.locations.domain.models.Location;
+import com.fulfilment.application.monolith.warehouses.adapters.database.WarehouseRepository;
+import com.fulfilment.application.monolith.warehouses.domain.models.Warehouse;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+public class WarehouseCreationSequencerTest {
+
+  private static final String LOCATION = "SEQUENCER-001";
+  private static final String OTHER_LOCATION = "SEQUENCER-002";
+
+  @Inject
+  WarehouseCreationSequencer warehouseCreationSequencer;
+  @Inject
+  WarehouseRepository warehouseRepository;
+
+  private final Location location = new Location(LOCATION, 3, 100);
+
+  @BeforeEach
+  public void setUp() {
+    QuarkusTransaction.requiringNew().run(() -> {
+      for (var identifier : List.of(LOCATION, OTHER_LOCATION)) {
+        var dbLocation = new DbLocation();
+        dbLocation.identification = identifier;
+        dbLocation.maxNumberOfWarehouses = location.maxNumberOfWarehouses();
+        dbLocation.maxCapacity = location.maxCapacity();
+        dbLocation.persist();
+      }
+    });
+  }
+
+  @AfterEach
+  public void tearDown() {
+    ClientProxy.unwrap(warehouseCreationSequencer).timeout = Duration.ofSeconds(10);
+    QuarkusTransaction.requiringNew().run(() -> {
+      for (var identifier : List.of(LOCATION, OTHER_LOCATION)) {
+        warehouseRepository.delete("location", identifier);
+        warehouseRepository.getEntityManager()
+            .createQuery("delete from DbLocationAggregate where location = ?1")
+            .setParameter(1, identifier)
+            .executeUpdate();
+        DbLocation.delete("identification", identifier);
+      }
+    });
+  }
+
+  @Test
+  public void testCreate_WhenManyCallersAtOneLocation_ThenEveryCallerGetsItsResult() throws Exception {
+    // Location has 3 slots: the 2 duplicates of SEQ.1 and the too big Warehouse fail, 2 of the 5 others find it full
+    var warehouses = new ArrayList<Warehouse>();
+    warehouses.add(warehouse("SEQ.1", 10));
+    warehouses.add(warehouse("SEQ.1", 10));
+    warehouses.add(warehouse("SEQ.1", 10));
+    warehouses.add(warehouse("SEQ.BIG", 1_000));
+    for (int i = 2; i <= 5; i++) {
+      warehouses.add(warehouse("SEQ." + i, 10));
+    }
+
+    var start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(warehouses.size());
+    var results = new ArrayList<CompletableFuture<Integer>>();
+    try {
+      for (var warehouse : warehouses) {
+        results.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            start.await();
+            warehouseCreationSequencer.create(location, warehouse);
+            return 201;
+          } catch (WebApplicationException e) {
+            return e.getResponse().getStatus();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        }, executor));
+      }
+      start.countDown();
+    } finally {
+      executor.shutdown();
+      assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    }
+
+    List<Integer> statuses = results.stream().map(CompletableFuture::join).toList();
+    long warehousesAtLocation = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.countByLocation(LOCATION));
+    List<String> created = QuarkusTransaction.requiringNew().call(() ->
+        warehouseRepository.findActiveBusinessUnitCodes(warehouses.stream().map(warehouse -> warehouse.businessUnitCode).toList()));
+
+    assertThat(statuses).filteredOn(status -> status == 201).hasSize(3);
+    assertThat(statuses).filteredOn(status -> status == 400).hasSize(5);
+    assertThat(warehousesAtLocation).isEqualTo(3);
+    assertThat(created).hasSize(3).doesNotHaveDuplicates().doesNotContain("SEQ.BIG");
+  }
+
+  @Test
+  public void testCreate_WhenStockIsInvalid_ThenOnlyThatCallerFails() {
+    var invalid = warehouse("SEQ.INVALID", 10);
+    invalid.stock = 0;
+
+    var exception = assertThrows(WebApplicationException.class,
+        () -> warehouseCreationSequencer.create(location, invalid));
+    warehouseCreationSequencer.create(location, warehouse("SEQ.VALID", 10));
+
+    assertThat(exception.getResponse().getStatus()).isEqualTo(400);
+    assertThat(exception.getMessage()).contains("Stock of Warehouse is less that 0");
+    long warehousesAtLocation = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.countByLocation(LOCATION));
+    assertThat(warehousesAtLocation).isEqualTo(1);
+  }
+
+  @Test
+  public void testCreate_WhenTimedOutInQueue_ThenCreationWithdrawn() throws Exception {
+    ClientProxy.unwrap(warehouseCreationSequencer).timeout = Duration.ofMillis(500);
+    var inserted = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var blocker = CompletableFuture.runAsync(() -> QuarkusTransaction.requiringNew().run(() -> {
+      warehouseRepository.create(warehouse("SEQ.TAKEN", 10));
+      inserted.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      QuarkusTransaction.setRollbackOnly();
+    }));
+    assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+    // The first batch takes SEQ.TAKEN and its insert waits for the rolled back one, SEQ.QUEUED waits in the queue
+    var taken = CompletableFuture.runAsync(() -> warehouseCreationSequencer.create(location, warehouse("SEQ.TAKEN", 10)));
+    TimeUnit.MILLISECONDS.sleep(200);
+
+    var exception = assertThrows(WebApplicationException.class,
+        () -> warehouseCreationSequencer.create(location, warehouse("SEQ.QUEUED", 10)));
+    release.countDown();
+    // Rolled back, so the batch creates SEQ.TAKEN
+    assertThat(blocker.handle((result, e) -> e).get(10, TimeUnit.SECONDS)).isNotNull();
+    // Taken by a batch before the timeout, so its caller waits for the batch outcome
+    taken.get(10, TimeUnit.SECONDS);
+
+    assertThat(exception.getResponse().getStatus()).isEqualTo(503);
+    List<String> created = QuarkusTransaction.requiringNew().call(() ->
+        warehouseRepository.findActiveBusinessUnitCodes(List.of("SEQ.TAKEN", "SEQ.QUEUED")));
+    assertThat(created).containsExactly("SEQ.TAKEN");
+  }
+
+  @Test
+  public void testCreate_WhenBusinessUnitCodeTakenAtOtherLocation_ThenOnlyThatCallerFails() throws Exception {
+    var inserted = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var otherLocation = CompletableFuture.runAsync(() -> QuarkusTransaction.requiringNew().run(() -> {
+      var warehouse = warehouse("SEQ.DUP", 10);
+      warehouse.location = OTHER_LOCATION;
+      warehouseRepository.create(warehouse);
+      inserted.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }));
+    assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+    // The batch doesn't see the uncommitted code and its insert waits for the other transaction
+    var duplicate = CompletableFuture.supplyAsync(() -> {
+      try {
+        warehouseCreationSequencer.create(location, warehouse("SEQ.DUP", 10));
+        return null;
+      } catch (WebApplicationException e) {
+        return e;
+      }
+    });
+    TimeUnit.MILLISECONDS.sleep(200);
+    release.countDown();
+    otherLocation.get(10, TimeUnit.SECONDS);
+
+    var exception = duplicate.get(10, TimeUnit.SECONDS);
+    warehouseCreationSequencer.create(location, warehouse("SEQ.UNIQUE", 10));
+
+    assertThat(exception).isNotNull();
+    assertThat(exception.getResponse().getStatus()).isEqualTo(400);
+    assertThat(exception.getMessage()).contains("already exists");
+    long warehousesAtLocation = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.countByLocation(LOCATION));
+    assertThat(warehousesAtLocation).isEqualTo(1);
+  }
+
+  @Test
+  public void testCreate_WhenLocationLockedByAnotherTransaction_ThenBatchWaitsForIt() throws Exception {
+    var locked = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var lockHolder = CompletableFuture.runAsync(() -> QuarkusTransaction.requiringNew().run(() -> {
+      // As a row lock admission of another instance does
+      DbLocation.find("identification", LOCATION).withLock(LockModeType.PESSIMISTIC_WRITE).firstResult();
+      locked.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }));
+    assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+    var creation = CompletableFuture.runAsync(() -> warehouseCreationSequencer.create(location, warehouse("SEQ.WAIT", 10)));
+    TimeUnit.MILLISECONDS.sleep(200);
+    assertThat(creation).isNotDone();
+
+    release.countDown();
+    lockHolder.get(10, TimeUnit.SECONDS);
+    creation.get(10, TimeUnit.SECONDS);
+
+    long warehousesAtLocation = QuarkusTransaction.requiringNew().call(() -> warehouseRepository.countByLocation(LOCATION));
+    assertThat(warehousesAtLocation).isEqualTo(1);
+  }
+
+  private static Warehouse warehouse(String businessUnitCode, int capacity) {
+    var warehouse = new Warehouse();
+    warehouse.businessUnitCode = businessUnitCode;
+    warehouse.location = LOCATION;
+    warehouse.capacity = capacity;
+    warehouse.stock = 1;
+    return warehouse;
+  }
+}